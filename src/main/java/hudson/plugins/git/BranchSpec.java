@@ -32,6 +32,11 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
 
     private String name;
 
+    /**
+     * The pattern compiled for the most recently expanded name, as most callers expand the name the same way.
+     */
+    private transient volatile CompiledPattern compiled;
+
     @Exported
     public String getName() {
         return name;
@@ -44,6 +49,7 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
             this.name = "**";
         else
             this.name = name.trim();
+        this.compiled = null;
     }
 
     @DataBoundConstructor
@@ -125,8 +131,23 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
         return expandedName;
     }
     
-    private Pattern getPattern(EnvVars env) {
+    /**
+     * Returns the pattern matching the refs this specification selects, compiled once per expanded name.
+     *
+     * @param env environment variables to expand the name with
+     * @return the pattern
+     */
+    /*package*/ Pattern getPattern(EnvVars env) {
         String expandedName = getExpandedName(env);
+        CompiledPattern c = compiled;
+        if (c == null || !c.expandedName.equals(expandedName)) {
+            c = new CompiledPattern(expandedName, compile(expandedName));
+            compiled = c;
+        }
+        return c.pattern;
+    }
+
+    private static Pattern compile(String expandedName) {
         // use regex syntax directly if name starts with colon
         if (expandedName.startsWith(":") && expandedName.length() > 1) {
             String regexSubstring = expandedName.substring(1, expandedName.length());
@@ -137,7 +158,7 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
         StringBuilder builder = new StringBuilder();
 
         // for legacy reasons (sic) we do support various branch spec format to declare remotes / branches
-        builder.append("(refs/heads/");
+        builder.append("(?:refs/heads/");
 
 
         // if an unqualified branch was given, consider all remotes (with various possible syntaxes)
@@ -192,6 +213,16 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
         return Pattern.compile(builder.toString());
     }
 
+    private static final class CompiledPattern {
+        private final String expandedName;
+        private final Pattern pattern;
+
+        private CompiledPattern(String expandedName, Pattern pattern) {
+            this.expandedName = expandedName;
+            this.pattern = pattern;
+        }
+    }
+
     @Extension
     public static class DescriptorImpl extends Descriptor<BranchSpec> {
         @Override
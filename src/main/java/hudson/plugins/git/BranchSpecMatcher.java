@@ -0,0 +1,132 @@
+package hudson.plugins.git;
+
+import hudson.EnvVars;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The {@link BranchSpec}s of a job compiled for one environment, to match many refs against the whole list.
+ *
+ * <p>
+ * The specifications are combined into a single pattern with one group per specification, so classifying a ref
+ * takes one match rather than one per specification. Regular expression specifications which contain groups of
+ * their own cannot be combined, and are then matched one at a time.
+ */
+public final class BranchSpecMatcher {
+
+    private final Pattern[] patterns;
+
+    /**
+     * All of {@link #patterns} as alternatives, group {@code i + 1} matching {@code patterns[i]}, or {@code null}
+     * if they cannot be combined.
+     */
+    private final Pattern combined;
+
+    private BranchSpecMatcher(Pattern[] patterns, Pattern combined) {
+        this.patterns = patterns;
+        this.combined = combined;
+    }
+
+    /**
+     * Compiles branch specifications.
+     *
+     * @param specs the branch specifications, in order of priority
+     * @param env   environment variables to expand the specifications with
+     * @return the matcher
+     */
+    public static BranchSpecMatcher compile(Collection<BranchSpec> specs, EnvVars env) {
+        Pattern[] patterns = new Pattern[specs.size()];
+        int i = 0;
+        for (BranchSpec spec : specs) {
+            patterns[i++] = spec.getPattern(env);
+        }
+        return new BranchSpecMatcher(patterns, combine(patterns));
+    }
+
+    private static Pattern combine(Pattern[] patterns) {
+        if (patterns.length < 2) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Pattern pattern : patterns) {
+            if (pattern.flags() != 0 || pattern.matcher("").groupCount() != 0) {
+                return null;
+            }
+            if (builder.length() > 0) {
+                builder.append('|');
+            }
+            builder.append('(').append(pattern.pattern()).append(')');
+        }
+        try {
+            return Pattern.compile(builder.toString());
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of branch specifications.
+     *
+     * @return the number of branch specifications
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Returns the first branch specification matching a ref.
+     *
+     * @param ref the ref, see {@link BranchSpec#matches(String, EnvVars)}
+     * @return the index of the first matching specification, or {@code -1} if none matches
+     */
+    public int indexOf(String ref) {
+        if (combined != null) {
+            Matcher m = combined.matcher(ref);
+            if (!m.matches()) {
+                return -1;
+            }
+            for (int i = 0; i < patterns.length; i++) {
+                if (m.start(i + 1) != -1) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matcher(ref).matches()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether any branch specification matches a ref.
+     *
+     * @param ref the ref, see {@link BranchSpec#matches(String, EnvVars)}
+     * @return {@code true} if at least one specification matches
+     */
+    public boolean matches(String ref) {
+        return indexOf(ref) != -1;
+    }
+
+    /**
+     * Returns the branches matching any of the branch specifications.
+     *
+     * @param branches the branches to filter
+     * @return the matching branches, in the original order
+     */
+    public List<Branch> filterMatchingBranches(Collection<Branch> branches) {
+        List<Branch> items = new ArrayList<>();
+        for (Branch b : branches) {
+            if (matches(b.getName())) {
+                items.add(b);
+            }
+        }
+        return items;
+    }
+}
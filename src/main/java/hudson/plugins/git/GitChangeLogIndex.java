@@ -0,0 +1,246 @@
+package hudson.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Byte offsets of the commits of a changelog file, kept in a side file next to it, so that {@link GitChangeSetList}
+ * can parse entries on demand instead of holding the whole changelog in memory.
+ *
+ * <p>
+ * Only the first occurrence of a commit is indexed, as {@link GitChangeLogParser} drops duplicates.
+ */
+final class GitChangeLogIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(GitChangeLogIndex.class.getName());
+
+    private static final int MAGIC = 0x47434c31; // GCL1
+
+    private static final byte[] COMMIT = "commit ".getBytes(StandardCharsets.US_ASCII);
+
+    private final File changelog;
+
+    /**
+     * Start offset of each indexed commit, in changelog order.
+     */
+    private final long[] starts;
+
+    /**
+     * End offset (exclusive) of each indexed commit, in changelog order.
+     */
+    private final long[] ends;
+
+    private GitChangeLogIndex(File changelog, long[] starts, long[] ends) {
+        this.changelog = changelog;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Returns the side file holding the index of a changelog.
+     *
+     * @param changelog the changelog file.
+     * @return the index file.
+     */
+    @NonNull
+    static File indexFileOf(@NonNull File changelog) {
+        return new File(changelog.getParentFile(), changelog.getName() + ".index");
+    }
+
+    /**
+     * Loads the index of a changelog, creating and saving it if it is missing or out of date.
+     *
+     * @param changelog the changelog file.
+     * @return the index.
+     * @throws IOException if the changelog cannot be read.
+     */
+    @NonNull
+    static GitChangeLogIndex of(@NonNull File changelog) throws IOException {
+        File indexFile = indexFileOf(changelog);
+        GitChangeLogIndex index = load(changelog, indexFile);
+        if (index == null) {
+            index = create(changelog);
+            index.save(indexFile);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of indexed commits.
+     *
+     * @return the number of indexed commits.
+     */
+    int size() {
+        return starts.length;
+    }
+
+    /**
+     * Reads and parses the indexed commits {@code from} (inclusive) to {@code to} (exclusive), in changelog order.
+     *
+     * @param parser the parser.
+     * @param from   the index of the first commit.
+     * @param to     the index after the last commit.
+     * @return the change sets.
+     * @throws IOException if the changelog cannot be read.
+     */
+    @NonNull
+    GitChangeSet[] read(@NonNull GitChangeLogParser parser, int from, int to) throws IOException {
+        GitChangeSet[] result = new GitChangeSet[to - from];
+        try (RandomAccessFile file = new RandomAccessFile(changelog, "r")) {
+            byte[] buffer = new byte[0];
+            for (int i = from; i < to; i++) {
+                int length = (int) (ends[i] - starts[i]);
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                file.seek(starts[i]);
+                file.readFully(buffer, 0, length);
+                result[i - from] = parser.parseCommit(buffer, length);
+            }
+        }
+        return result;
+    }
+
+    @CheckForNull
+    private static GitChangeLogIndex load(File changelog, File indexFile) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readLong() != changelog.length()
+                    || in.readLong() != changelog.lastModified()) {
+                return null;
+            }
+            int count = in.readInt();
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            for (int i = 0; i < count; i++) {
+                starts[i] = in.readLong();
+                ends[i] = in.readLong();
+            }
+            return new GitChangeLogIndex(changelog, starts, ends);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Ignoring unreadable changelog index " + indexFile, e);
+            return null;
+        }
+    }
+
+    private void save(File indexFile) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(changelog.length());
+            out.writeLong(changelog.lastModified());
+            out.writeInt(starts.length);
+            for (int i = 0; i < starts.length; i++) {
+                out.writeLong(starts[i]);
+                out.writeLong(ends[i]);
+            }
+        } catch (IOException e) {
+            // the index is rebuilt the next time the changelog is loaded
+            LOGGER.log(Level.FINE, "Failed to save changelog index " + indexFile, e);
+        }
+    }
+
+    /**
+     * Scans a changelog for the offsets of its commits.
+     */
+    @NonNull
+    static GitChangeLogIndex create(@NonNull File changelog) throws IOException {
+        Builder builder = new Builder();
+        // only the start of each line is needed, to recognize commits and their ids
+        byte[] line = new byte[COMMIT.length + 80];
+        try (InputStream in = new BufferedInputStream(new FileInputStream(changelog))) {
+            long offset = 0;
+            while (true) {
+                int length = 0;
+                long lineStart = offset;
+                int b;
+                while ((b = in.read()) != -1) {
+                    offset++;
+                    if (b == '\n') {
+                        break;
+                    }
+                    if (length < line.length) {
+                        line[length++] = (byte) b;
+                    }
+                }
+                if (offset == lineStart) {
+                    break;
+                }
+                if (startsWithCommit(line, length)) {
+                    builder.add(lineStart, idOf(line, length));
+                }
+            }
+            builder.end(offset);
+        }
+        return new GitChangeLogIndex(changelog, Arrays.copyOf(builder.starts, builder.count),
+                Arrays.copyOf(builder.ends, builder.count));
+    }
+
+    private static boolean startsWithCommit(byte[] line, int length) {
+        if (length < COMMIT.length) {
+            return false;
+        }
+        for (int i = 0; i < COMMIT.length; i++) {
+            if (line[i] != COMMIT[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String idOf(byte[] line, int length) {
+        int end = COMMIT.length;
+        while (end < length && line[end] != ' ' && line[end] != '\r') {
+            end++;
+        }
+        return new String(line, COMMIT.length, end - COMMIT.length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Collects the offsets of the first occurrence of each commit.
+     */
+    private static class Builder {
+        private final Set<String> ids = new HashSet<>();
+        private long[] starts = new long[64];
+        private long[] ends = new long[64];
+        private int count;
+        private long commitStart = -1;
+        private String commitId;
+
+        void add(long start, String id) {
+            end(start);
+            commitStart = start;
+            commitId = id;
+        }
+
+        void end(long end) {
+            if (commitStart < 0 || !ids.add(commitId)) {
+                return;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = commitStart;
+            ends[count] = end;
+            count++;
+        }
+    }
+}
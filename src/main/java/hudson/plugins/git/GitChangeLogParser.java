@@ -4,6 +4,7 @@ import hudson.model.Run;
 import hudson.scm.ChangeLogParser;
 import hudson.scm.RepositoryBrowser;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
@@ -11,9 +12,12 @@ import org.xml.sax.SAXException;
 
 import javax.annotation.Nonnull;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStreamReader;
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -34,7 +38,17 @@ public class GitChangeLogParser extends ChangeLogParser {
     }
     
     public List<GitChangeSet> parse(@Nonnull InputStream changelog) throws IOException {
-        return parse(IOUtils.readLines(changelog, "UTF-8"));
+        // reads the changelog one line at a time rather than loading it whole, the caller closes the stream
+        LineIterator lineIterator = IOUtils.lineIterator(changelog, "UTF-8");
+        try {
+            return parse(lineIterator);
+        } catch (IllegalStateException e) {
+            // LineIterator wraps read failures
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     public List<GitChangeSet> parse(@Nonnull List<String> changelog) {
@@ -43,6 +57,10 @@ public class GitChangeLogParser extends ChangeLogParser {
 
     @Override public GitChangeSetList parse(Run build, RepositoryBrowser<?> browser, File changelogFile)
         throws IOException, SAXException {
+        if (LAZY_LOAD_THRESHOLD >= 0 && changelogFile.length() > LAZY_LOAD_THRESHOLD) {
+            // large changelogs are only indexed, their entries are parsed when needed
+            return new GitChangeSetList(build, browser, GitChangeLogIndex.of(changelogFile), this);
+        }
         // Parse the log file into GitChangeSet items - each one is a commit
         LineIterator lineIterator = null;
         try {
@@ -55,21 +73,24 @@ public class GitChangeLogParser extends ChangeLogParser {
 
     private List<GitChangeSet> parse(Iterator<String> changelog) {
         Set<GitChangeSet> r = new LinkedHashSet<>();
-        List<String> lines = null;
+        // GitChangeSet does not keep the lines it is created from, so one buffer serves every commit
+        List<String> lines = new ArrayList<>();
+        boolean inCommit = false;
         while (changelog.hasNext()) {
             String line = changelog.next();
             if (line.startsWith("commit ")) {
-                if (lines != null) {
+                if (inCommit) {
                     r.add(parseCommit(lines, authorOrCommitter));
+                    lines.clear();
                 }
-                lines = new ArrayList<>();
+                inCommit = true;
             }
 
-            if (lines != null && lines.size()<THRESHOLD)
+            if (inCommit && lines.size()<THRESHOLD)
                 lines.add(line);    // TODO: if we ignored some lines, tell the user so.
         }
 
-        if (lines != null) {
+        if (inCommit) {
             r.add(parseCommit(lines, authorOrCommitter));
         }
         return new ArrayList<>(r);
@@ -79,8 +100,32 @@ public class GitChangeLogParser extends ChangeLogParser {
         return new GitChangeSet(lines, authorOrCommitter);
     }
 
+    /**
+     * Parses a single commit of the changelog, see {@link GitChangeLogIndex}.
+     *
+     * @param buffer the UTF-8 encoded lines of the commit.
+     * @param length the number of bytes to read from {@code buffer}.
+     * @return the change set.
+     */
+    GitChangeSet parseCommit(byte[] buffer, int length) {
+        List<String> lines = new ArrayList<>();
+        LineIterator lineIterator = new LineIterator(
+                new InputStreamReader(new ByteArrayInputStream(buffer, 0, length), StandardCharsets.UTF_8));
+        while (lineIterator.hasNext() && lines.size() < THRESHOLD) {
+            lines.add(lineIterator.next());
+        }
+        return parseCommit(lines, authorOrCommitter);
+    }
+
     /**
      * To control the memory overhead of a large change, we ignore beyond certain number of lines.
      */
     private static int THRESHOLD = 1000;
+
+    /**
+     * Changelog files larger than this many bytes are indexed and parsed on demand by {@link GitChangeSetList}
+     * rather than parsed whole when the build is loaded. A negative value always parses the whole changelog.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the threshold")
+    public static long LAZY_LOAD_THRESHOLD = Long.getLong(GitChangeLogParser.class.getName() + ".lazyLoadThreshold", 1024L * 1024L);
 }
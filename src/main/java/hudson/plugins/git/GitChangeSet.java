@@ -14,14 +14,11 @@ import org.kohsuke.stapler.export.ExportedBean;
 
 import javax.annotation.CheckForNull;
 import java.io.IOException;
-import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
-import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -31,6 +28,7 @@ import static hudson.Util.fixEmpty;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeFieldType;
+import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.DateTimeFormatterBuilder;
 import org.joda.time.format.ISODateTimeFormat;
@@ -56,7 +54,16 @@ public class GitChangeSet extends ChangeLogSet.Entry {
     private static final String ISO_8601 = "yyyy-MM-dd'T'HH:mm:ss";
     private static final String ISO_8601_WITH_TZ = "yyyy-MM-dd'T'HH:mm:ssX";
 
-    private final DateTimeFormatter [] dateFormatters;
+    /**
+     * Date formats accepted by {@link #getTimestamp()}, in order of priority. Joda formatters are immutable and
+     * thread safe, so they are shared by all change sets.
+     */
+    private static final DateTimeFormatter[] DATE_FORMATTERS = createDateFormatters();
+
+    /**
+     * Formats the legacy seconds since epoch timestamps of {@link #isoDateFormat(String)}.
+     */
+    private static final DateTimeFormatter LEGACY_DATE_FORMATTER = DateTimeFormat.forPattern(ISO_8601).withZoneUTC();
 
     public static final Logger LOGGER = Logger.getLogger(GitChangeSet.class.getName());
 
@@ -91,6 +98,10 @@ public class GitChangeSet extends ChangeLogSet.Entry {
     private String parentCommit;
     private Collection<Path> paths = new HashSet<>();
     private boolean authorOrCommitter;
+    /**
+     * {@link #getDate()} in milliseconds since epoch, parsed once when the change set is created.
+     */
+    private final long timestamp;
 
     /**
      * Create Git change set using information in given lines
@@ -104,6 +115,10 @@ public class GitChangeSet extends ChangeLogSet.Entry {
             parseCommit(lines);
         }
 
+        this.timestamp = parseTimestamp(getDate());
+    }
+
+    private static DateTimeFormatter[] createDateFormatters() {
         // Nearly ISO dates generated by git whatchanged --format=+ci
         // Look like '2015-09-30 08:21:24 -0600'
         // ISO is    '2015-09-30T08:21:24-06:00'
@@ -144,10 +159,11 @@ public class GitChangeSet extends ChangeLogSet.Entry {
 
         DateTimeFormatter isoDateFormat = ISODateTimeFormat.basicDateTimeNoMillis();
 
-        dateFormatters = new DateTimeFormatter[3];
+        DateTimeFormatter[] dateFormatters = new DateTimeFormatter[3];
         dateFormatters[0] = gitDateFormatter; // First priority +%cI format
         dateFormatters[1] = nearlyISOFormatter; // Second priority seen in git-plugin
         dateFormatters[2] = isoDateFormat; // Third priority, ISO 8601 format
+        return dateFormatters;
     }
 
     private void parseCommit(List<String> lines) {
@@ -246,9 +262,7 @@ public class GitChangeSet extends ChangeLogSet.Entry {
         if (NumberUtils.isDigits(date)) {
             // legacy mode
             long time = Long.parseLong(date);
-            DateFormat formatter = new SimpleDateFormat(ISO_8601);
-            formatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-            return formatter.format(new Date(time * 1000)) + timezone;
+            return LEGACY_DATE_FORMATTER.print(time * 1000) + timezone;
         } else {
             // already in ISO format
             return s;
@@ -274,14 +288,18 @@ public class GitChangeSet extends ChangeLogSet.Entry {
         String date = getDate();
         if (date == null) {
             LOGGER.log(Level.WARNING, "Failed to parse null date");
-            return -1;
-        }
-        if (date.isEmpty()) {
+        } else if (date.isEmpty()) {
             LOGGER.log(Level.WARNING, "Failed to parse empty date");
+        }
+        return timestamp;
+    }
+
+    private static long parseTimestamp(String date) {
+        if (date == null || date.isEmpty()) {
             return -1;
         }
 
-        for (DateTimeFormatter dateFormatter : dateFormatters) {
+        for (DateTimeFormatter dateFormatter : DATE_FORMATTERS) {
             try {
                 DateTime dateTime = DateTime.parse(date, dateFormatter);
                 return dateTime.getMillis();
@@ -299,7 +317,7 @@ public class GitChangeSet extends ChangeLogSet.Entry {
              * http://stackoverflow.com/questions/15505658/unparseable-date-using-dateformat-parse
              */
             final String java6FormatDef = ISO_8601_WITH_TZ.replace("X", "Z");
-            final String java6Date = getDate().replaceAll(":(\\d\\d)$", "$1");
+            final String java6Date = date.replaceAll(":(\\d\\d)$", "$1");
             try {
                 return new SimpleDateFormat(java6FormatDef).parse(java6Date).getTime();
             } catch (ParseException e) {
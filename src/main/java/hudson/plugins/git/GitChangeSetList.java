@@ -5,6 +5,10 @@ import hudson.scm.ChangeLogSet;
 import hudson.scm.RepositoryBrowser;
 import org.kohsuke.stapler.export.Exported;
 
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -25,6 +29,14 @@ public class GitChangeSetList extends ChangeLogSet<GitChangeSet> {
             log.setParent(this);
     }
 
+    /**
+     * Creates a list whose entries are parsed from the changelog a page at a time, when first accessed.
+     */
+    /*package*/ GitChangeSetList(Run build, RepositoryBrowser<?> browser, GitChangeLogIndex index, GitChangeLogParser parser) {
+        super(build, browser);
+        this.changeSets = Collections.unmodifiableList(new LazyChangeSets(index, parser));
+    }
+
     public boolean isEmptySet() {
         return changeSets.isEmpty();
     }
@@ -42,4 +54,56 @@ public class GitChangeSetList extends ChangeLogSet<GitChangeSet> {
         return "git";
     }
 
+    /**
+     * Newest first view of an indexed changelog. Pages of parsed entries are softly referenced, so memory is only
+     * held for the pages in use.
+     */
+    private class LazyChangeSets extends AbstractList<GitChangeSet> {
+        private static final int PAGE_SIZE = 100;
+
+        private final GitChangeLogIndex index;
+        private final GitChangeLogParser parser;
+        private final SoftReference<GitChangeSet[]>[] pages;
+
+        @SuppressWarnings("unchecked")
+        LazyChangeSets(GitChangeLogIndex index, GitChangeLogParser parser) {
+            this.index = index;
+            this.parser = parser;
+            this.pages = new SoftReference[(index.size() + PAGE_SIZE - 1) / PAGE_SIZE];
+        }
+
+        @Override
+        public GitChangeSet get(int i) {
+            if (i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+            }
+            return page(i / PAGE_SIZE)[i % PAGE_SIZE];
+        }
+
+        @Override
+        public int size() {
+            return index.size();
+        }
+
+        private synchronized GitChangeSet[] page(int p) {
+            GitChangeSet[] page = pages[p] == null ? null : pages[p].get();
+            if (page == null) {
+                int size = size();
+                // the changelog lists the oldest commit first
+                int from = Math.max(0, size - (p + 1) * PAGE_SIZE);
+                int to = size - p * PAGE_SIZE;
+                try {
+                    page = index.read(parser, from, to);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read changelog of " + getRun(), e);
+                }
+                Collections.reverse(Arrays.asList(page));
+                for (GitChangeSet log : page) {
+                    log.setParent(GitChangeSetList.this);
+                }
+                pages[p] = new SoftReference<>(page);
+            }
+            return page;
+        }
+    }
 }
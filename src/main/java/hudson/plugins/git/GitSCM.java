@@ -25,7 +25,9 @@ import hudson.plugins.git.extensions.GitSCMExtension;
 import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
 import hudson.plugins.git.extensions.impl.AuthorInChangelog;
 import hudson.plugins.git.extensions.impl.BuildChooserSetting;
+import hudson.plugins.git.extensions.impl.BuildDataRetention;
 import hudson.plugins.git.extensions.impl.ChangelogToBranch;
+import hudson.plugins.git.extensions.impl.ExternalBranchHistory;
 import hudson.plugins.git.extensions.impl.PathRestriction;
 import hudson.plugins.git.extensions.impl.LocalBranch;
 import hudson.plugins.git.extensions.impl.PreBuildMerge;
@@ -630,7 +632,7 @@ public class GitSCM extends GitSCMBackwardCompatibility {
 
                 for (URIish urIish : remoteConfig.getURIs()) {
                     String gitRepo = urIish.toString();
-                    Map<String, ObjectId> heads = git.getHeadRev(gitRepo);
+                    Map<String, ObjectId> heads = RemoteHeadsCache.getHeadRev(git, gitRepo, getCredentialsId(urIish, environment));
                     if (heads==null || heads.isEmpty()) {
                         listener.getLogger().println("[poll] Couldn't get remote head revision");
                         return BUILD_NOW;
@@ -654,33 +656,32 @@ public class GitSCM extends GitSCMBackwardCompatibility {
                         }
                     }
 
-                    for (BranchSpec branchSpec : getBranches()) {
-                        for (Entry<String, ObjectId> entry : heads.entrySet()) {
-                            final String head = entry.getKey();
-                            // head is "refs/(heads|tags|whatever)/branchName
+                    BranchSpecMatcher branchSpecs = BranchSpecMatcher.compile(getBranches(), environment);
+                    for (Entry<String, ObjectId> entry : heads.entrySet()) {
+                        final String head = entry.getKey();
+                        // head is "refs/(heads|tags|whatever)/branchName
 
-                            // first, check the a canonical git reference is configured
-                            if (!branchSpec.matches(head, environment)) {
+                        // first, check the a canonical git reference is configured
+                        if (!branchSpecs.matches(head)) {
 
-                                // convert head `refs/(heads|tags|whatever)/branch` into shortcut notation `remote/branch`
-                                String name = head;
-                                Matcher matcher = GIT_REF.matcher(head);
-                                if (matcher.matches()) name = remote + head.substring(matcher.group(1).length());
-                                else name = remote + "/" + head;
+                            // convert head `refs/(heads|tags|whatever)/branch` into shortcut notation `remote/branch`
+                            String name = head;
+                            Matcher matcher = GIT_REF.matcher(head);
+                            if (matcher.matches()) name = remote + head.substring(matcher.group(1).length());
+                            else name = remote + "/" + head;
 
-                                if (!branchSpec.matches(name, environment)) continue;
-                            }
-
-                            final ObjectId sha1 = entry.getValue();
-                            Build built = buildData.getLastBuild(sha1);
-                            if (built != null) {
-                                listener.getLogger().println("[poll] Latest remote head revision on " + head + " is: " + sha1.getName() + " - already built by " + built.getBuildNumber());
-                                continue;
-                            }
+                            if (!branchSpecs.matches(name)) continue;
+                        }
 
-                            listener.getLogger().println("[poll] Latest remote head revision on " + head + " is: " + sha1.getName());
-                            return BUILD_NOW;
+                        final ObjectId sha1 = entry.getValue();
+                        Build built = buildData.getLastBuild(sha1);
+                        if (built != null) {
+                            listener.getLogger().println("[poll] Latest remote head revision on " + head + " is: " + sha1.getName() + " - already built by " + built.getBuildNumber());
+                            continue;
                         }
+
+                        listener.getLogger().println("[poll] Latest remote head revision on " + head + " is: " + sha1.getName());
+                        return BUILD_NOW;
                     }
                 }
             }
@@ -780,6 +781,24 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         return c;
     }
 
+    /**
+     * Returns the id of the credentials configured for the given remote URL.
+     *
+     * @param uri remote repository URL, with parameters already expanded
+     * @param environment environment used to expand the configured URLs
+     * @return the credentials id, or {@code null} if none is configured for this URL
+     */
+    @CheckForNull
+    private String getCredentialsId(URIish uri, EnvVars environment) {
+        for (UserRemoteConfig uc : getUserRemoteConfigs()) {
+            String url = getParameterString(uc.getUrl(), environment);
+            if (url != null && (url.equals(uri.toString()) || url.equals(uri.toPrivateString()))) {
+                return uc.getCredentialsId();
+            }
+        }
+        return null;
+    }
+
     @NonNull
     private BuildData fixNull(BuildData bd) {
         return bd != null ? bd : new BuildData(getScmName(), getUserRemoteConfigs()) /*dummy*/;
@@ -1025,7 +1044,10 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         Build revToBuild = new Build(marked, rev, build.getNumber(), null);
         buildData.saveBuild(revToBuild);
 
-        if (buildData.getBuildsByBranchName().size() >= 100) {
+        BuildDataRetention retention = getExtensions().get(BuildDataRetention.class);
+        if (retention != null) {
+            retention.apply(this, build, git, listener, buildData);
+        } else if (buildData.getBuildsByBranchName().size() >= 100) {
             log.println("JENKINS-19022: warning: possible memory leak due to Git plugin usage; see: https://wiki.jenkins-ci.org/display/JENKINS/Remove+Git+Plugin+BuildsByBranch+BuildData");
         }
 
@@ -1099,7 +1121,14 @@ public class GitSCM extends GitSCMBackwardCompatibility {
             listener.getLogger().println("Using checkout strategy: " + getBuildChooser().getDisplayName());
 
         BuildData previousBuildData = getBuildData(build.getPreviousBuild());   // read only
-        BuildData buildData = copyBuildData(build.getPreviousBuild());
+        BuildDataStore store = getBuildDataStore(build.getParent());
+        BuildData buildData = store == null ? null : store.getLatest();
+        if (buildData == null) {
+            buildData = copyBuildData(build.getPreviousBuild());
+        } else {
+            buildData.setScmName(getScmName());
+        }
+        buildData.setBranchHistory(null);
 
         if (VERBOSE && buildData.lastBuild != null) {
             listener.getLogger().println("Last Built Revision: " + buildData.lastBuild.revision);
@@ -1115,6 +1144,12 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         retrieveChanges(build, git, listener);
         Build revToBuild = determineRevisionToBuild(build, buildData, environment, git, listener);
 
+        if (store != null) {
+            // the build only records its own revision, the complete history goes to the store
+            store.record(build.getNumber(), buildData);
+            buildData = store.delta(buildData);
+        }
+
         // Track whether we're trying to add a duplicate BuildData, now that it's been updated with
         // revision info for this build etc. The default assumption is that it's a duplicate.
         boolean buildDataAlreadyPresent = false;
@@ -1704,28 +1739,107 @@ public class GitSCM extends GitSCMBackwardCompatibility {
      * Find the build log (BuildData) recorded with the last build that completed. BuildData
      * may not be recorded if an exception occurs in the plugin logic.
      *
+     * <p>
+     * If the build only recorded its own revision (see {@link ExternalBranchHistory}), the complete build data is
+     * returned from the job's {@link BuildDataStore} when no later build recorded build data since, even if the
+     * build which last wrote to the store was deleted or wrote to it before this build.
+     *
      * @param build run whose build data is returned
      * @return the last recorded build data
      */
     public @CheckForNull BuildData getBuildData(Run build) {
+        if (build == null) {
+            return null;
+        }
+        BuildDataStore store = getBuildDataStore(build.getParent());
+        if (store != null) {
+            BuildData complete = getBuildData(build, store);
+            if (complete != null) {
+                return complete;
+            }
+        }
+
         BuildData buildData = null;
         while (build != null) {
-            List<BuildData> buildDataList = build.getActions(BuildData.class);
-            for (BuildData bd : buildDataList) {
-                if (bd != null && isRelevantBuildData(bd)) {
-                    buildData = bd;
-                    break;
-                }
-            }
+            buildData = getRelevantBuildData(build);
             if (buildData != null) {
                 break;
             }
             build = build.getPreviousBuild();
         }
 
+        if (buildData != null && buildData.getBranchHistory() != null) {
+            BuildData complete = BuildDataStore.of(build.getParent(), buildData.getBranchHistory())
+                    .get(build.getNumber());
+            if (complete != null) {
+                complete.setIndex(buildData.getIndex());
+                return complete;
+            }
+        }
         return buildData;
     }
 
+    /**
+     * Returns the complete build data of a build from the store, without loading the builds before it.
+     *
+     * @return the build data, or {@code null} if a later build recorded build data since the build.
+     */
+    @CheckForNull
+    private BuildData getBuildData(Run<?, ?> build, BuildDataStore store) {
+        int recorded = store.getBuildNumber();
+        if (recorded < 0) {
+            return null;
+        }
+        // only the builds since this one are loaded, to check that none of them recorded build data
+        for (Run<?, ?> r = build.getParent().getNearestOldBuild(recorded);
+             r != null && r.getNumber() > build.getNumber(); r = r.getPreviousBuild()) {
+            if (getRelevantBuildData(r) != null) {
+                return null;
+            }
+        }
+        BuildData own = getRelevantBuildData(build);
+        BuildData complete = store.get(build.getNumber());
+        if (complete == null) {
+            // the build recorded out of order with a concurrent build, or the build which recorded was deleted
+            complete = store.getLatest();
+            if (complete == null) {
+                return null;
+            }
+            if (own != null && own.lastBuild != null) {
+                complete.saveBuild(own.lastBuild);
+            }
+        }
+        if (own != null) {
+            complete.setIndex(own.getIndex());
+        }
+        return complete;
+    }
+
+    @CheckForNull
+    private BuildData getRelevantBuildData(Run<?, ?> build) {
+        for (BuildData bd : build.getActions(BuildData.class)) {
+            if (bd != null && isRelevantBuildData(bd)) {
+                return bd;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the store of the branch build history of this SCM in the given job, if enabled.
+     */
+    @CheckForNull
+    private BuildDataStore getBuildDataStore(Job<?, ?> job) {
+        if (getExtensions().get(ExternalBranchHistory.class) == null) {
+            return null;
+        }
+        List<String> urls = new ArrayList<>();
+        for (UserRemoteConfig uc : getUserRemoteConfigs()) {
+            urls.add(uc.getUrl());
+        }
+        return BuildDataStore.of(job, BuildDataStore.nameOf(getScmName(), urls));
+    }
+
     /**
      * Given the workspace, gets the working directory, which will be the workspace
      * if no relative target dir is specified. Otherwise, it'll be "workspace/relativeTargetDir".
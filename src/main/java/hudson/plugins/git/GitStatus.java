@@ -195,7 +195,7 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
             && StringUtils.equals(normalizePath(lhs.getPath()), normalizePath(rhs.getPath()));
     }
 
-    private static String normalizePath(String path) {
+    static String normalizePath(String path) {
         if (path.startsWith("/"))   path=path.substring(1);
         if (path.endsWith("/"))     path=path.substring(0,path.length()-1);
         if (path.endsWith(".git"))  path=path.substring(0,path.length()-4);
@@ -349,7 +349,8 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
                     LOGGER.severe("Jenkins.getInstance() is null in GitStatus.onNotifyCommit");
                     return result;
                 }
-                for (final Item project : Jenkins.getInstance().getAllItems()) {
+                RepositoryItemIndex index = RepositoryItemIndex.get(jenkins);
+                for (final Item project : index.getItems(uri)) {
                     SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(project);
                     if (scmTriggerItem == null) {
                         continue;
@@ -456,7 +457,7 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
 
                     }
                 }
-                if (!scmFound) {
+                if (!scmFound && !index.hasGitItems()) {
                     result.add(new MessageResponseContributor("No git jobs found"));
                 } else if (!urlFound) {
                     result.add(new MessageResponseContributor(
@@ -0,0 +1,301 @@
+package hudson.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SCMListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.scm.SCM;
+import hudson.scm.SCMRevisionState;
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Reverse index from a repository location to the full names of the {@link SCMTriggerItem}s using a {@link GitSCM}
+ * on that repository, used by {@link GitStatus} so that a commit notification only inspects the jobs that may
+ * match it.
+ *
+ * <p>
+ * Two URLs share an index key exactly when {@link GitStatus#looselyMatches(URIish, URIish)} considers them equal.
+ * The index is built lazily on first use and then kept current by item, save and checkout listeners. It may contain
+ * stale entries, which callers must re-check anyway, but does not miss an item using a repository.
+ */
+@Restricted(NoExternalUse.class)
+public final class RepositoryItemIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(RepositoryItemIndex.class.getName());
+
+    private static RepositoryItemIndex instance;
+
+    private final WeakReference<Jenkins> jenkins;
+
+    /**
+     * Index key to full names of the items using the repository.
+     */
+    private final Map<String, Set<String>> itemsByRepository = new HashMap<>();
+
+    /**
+     * Full names of the items using a {@link GitSCM} to the index keys of their repositories.
+     */
+    private final Map<String, Set<String>> repositoriesByItem = new HashMap<>();
+
+    private RepositoryItemIndex(@NonNull Jenkins jenkins) {
+        this.jenkins = new WeakReference<>(jenkins);
+    }
+
+    /**
+     * Returns the index for the given Jenkins instance, building it on first use.
+     *
+     * @param jenkins the Jenkins instance.
+     * @return the index.
+     */
+    @NonNull
+    public static synchronized RepositoryItemIndex get(@NonNull Jenkins jenkins) {
+        if (instance == null || instance.jenkins.get() != jenkins) {
+            RepositoryItemIndex index = new RepositoryItemIndex(jenkins);
+            for (Item item : jenkins.getAllItems()) {
+                index.update(item);
+            }
+            LOGGER.log(Level.FINE, "Indexed {0} items using {1} repositories",
+                    new Object[]{index.repositoriesByItem.size(), index.itemsByRepository.size()});
+            instance = index;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the index if it has already been built for the running Jenkins instance.
+     */
+    @CheckForNull
+    private static synchronized RepositoryItemIndex current() {
+        Jenkins j = Jenkins.getInstance();
+        return instance != null && j != null && instance.jenkins.get() == j ? instance : null;
+    }
+
+    /**
+     * Returns the items which may use the given repository, in a stable order.
+     *
+     * @param uri the repository URL.
+     * @return the items whose configured repositories loosely match {@code uri}.
+     */
+    @NonNull
+    public List<Item> getItems(@NonNull URIish uri) {
+        Jenkins j = jenkins.get();
+        List<String> names;
+        synchronized (this) {
+            Set<String> items = itemsByRepository.get(key(uri));
+            if (items == null || j == null) {
+                return Collections.emptyList();
+            }
+            names = new ArrayList<>(items);
+        }
+        List<Item> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            Item item = j.getItemByFullName(name);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if at least one item uses a {@link GitSCM}.
+     *
+     * @return {@code true} if at least one item uses a {@link GitSCM}.
+     */
+    public synchronized boolean hasGitItems() {
+        return !repositoriesByItem.isEmpty();
+    }
+
+    /**
+     * Returns the index key of a repository URL.
+     *
+     * @param uri the repository URL.
+     * @return the host and normalized path of the URL.
+     */
+    @NonNull
+    static String key(@NonNull URIish uri) {
+        String host = uri.getHost();
+        String path = uri.getPath();
+        return (host == null ? "" : "//" + host) + "/" + GitStatus.normalizePath(path == null ? "" : path);
+    }
+
+    /**
+     * Records the repositories currently used by an item. Repositories that are no longer used are kept until the
+     * item is deleted or moved: the SCMs of some items (e.g. Pipeline jobs) are only known from their completed
+     * builds, so a repository missing from {@link SCMTriggerItem#getSCMs()} does not mean the item stopped using it.
+     */
+    private void update(@NonNull Item item) {
+        SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(item);
+        Set<String> keys = null;
+        if (scmTriggerItem != null) {
+            for (SCM scm : scmTriggerItem.getSCMs()) {
+                if (scm instanceof GitSCM) {
+                    if (keys == null) {
+                        keys = new LinkedHashSet<>();
+                    }
+                    keys.addAll(keys((GitSCM) scm));
+                }
+            }
+        }
+        if (keys != null) {
+            add(item.getFullName(), keys);
+        }
+    }
+
+    private synchronized void add(@NonNull String fullName, @NonNull Set<String> keys) {
+        Set<String> repositories = repositoriesByItem.get(fullName);
+        if (repositories == null) {
+            repositories = new LinkedHashSet<>();
+            repositoriesByItem.put(fullName, repositories);
+        }
+        for (String key : keys) {
+            if (repositories.add(key)) {
+                Set<String> items = itemsByRepository.get(key);
+                if (items == null) {
+                    items = new LinkedHashSet<>();
+                    itemsByRepository.put(key, items);
+                }
+                items.add(fullName);
+            }
+        }
+    }
+
+    private synchronized void remove(@NonNull String fullName) {
+        Set<String> repositories = repositoriesByItem.remove(fullName);
+        if (repositories == null) {
+            return;
+        }
+        for (String key : repositories) {
+            Set<String> items = itemsByRepository.get(key);
+            if (items != null) {
+                items.remove(fullName);
+                if (items.isEmpty()) {
+                    itemsByRepository.remove(key);
+                }
+            }
+        }
+    }
+
+    private synchronized void removeDescendants(@NonNull String fullName) {
+        String prefix = fullName + "/";
+        List<String> names = new ArrayList<>();
+        for (String name : repositoriesByItem.keySet()) {
+            if (name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+        for (String name : names) {
+            remove(name);
+        }
+    }
+
+    @NonNull
+    private static Set<String> keys(@NonNull GitSCM scm) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (RemoteConfig repository : scm.getRepositories()) {
+            for (URIish uri : repository.getURIs()) {
+                keys.add(key(uri));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Keeps the index current when items are created, updated, moved or deleted.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onCreated(Item item) {
+            RepositoryItemIndex index = current();
+            if (index != null) {
+                index.update(item);
+            }
+        }
+
+        @Override
+        public void onCopied(Item src, Item item) {
+            onCreated(item);
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            onCreated(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            RepositoryItemIndex index = current();
+            if (index != null) {
+                index.remove(item.getFullName());
+                index.removeDescendants(item.getFullName());
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            RepositoryItemIndex index = current();
+            if (index != null) {
+                index.remove(oldFullName);
+                index.update(item);
+            }
+        }
+    }
+
+    /**
+     * Picks up configuration changes that are saved without going through {@link ItemListener#onUpdated(Item)}.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item) {
+                RepositoryItemIndex index = current();
+                if (index != null) {
+                    index.update((Item) o);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records repositories of jobs whose SCMs are only known once they check out, such as Pipeline jobs.
+     */
+    @Extension
+    public static class SCMListenerImpl extends SCMListener {
+        @Override
+        public void onCheckout(Run<?, ?> build, SCM scm, FilePath workspace, TaskListener listener,
+                               File changelogFile, SCMRevisionState pollingBaseline) throws Exception {
+            if (scm instanceof GitSCM) {
+                RepositoryItemIndex index = current();
+                if (index != null && SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(build.getParent()) != null) {
+                    index.add(build.getParent().getFullName(), keys((GitSCM) scm));
+                }
+            }
+        }
+    }
+}
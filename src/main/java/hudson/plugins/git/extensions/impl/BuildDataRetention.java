@@ -0,0 +1,214 @@
+package hudson.plugins.git.extensions.impl;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.GitException;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import hudson.plugins.git.util.Build;
+import hudson.plugins.git.util.BuildData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.lib.Constants;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Bounds the branch build history ({@link BuildData#getBuildsByBranchName()}) recorded with each build, which
+ * otherwise grows with every branch ever built (JENKINS-19022).
+ */
+public class BuildDataRetention extends GitSCMExtension {
+    private int maxBranches;
+    private int maxAge;
+    private boolean pruneStaleBranches;
+
+    @DataBoundConstructor
+    public BuildDataRetention() {
+    }
+
+    /**
+     * Maximum number of branches to remember, the least recently built ones are forgotten first.
+     *
+     * @return the maximum number of branches, {@code 0} for no limit.
+     */
+    public int getMaxBranches() {
+        return maxBranches;
+    }
+
+    @DataBoundSetter
+    public void setMaxBranches(int maxBranches) {
+        this.maxBranches = Math.max(0, maxBranches);
+    }
+
+    /**
+     * Branches that have not been built in this many builds are forgotten.
+     *
+     * @return the maximum age in builds, {@code 0} for no limit.
+     */
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    @DataBoundSetter
+    public void setMaxAge(int maxAge) {
+        this.maxAge = Math.max(0, maxAge);
+    }
+
+    /**
+     * Whether branches which no longer exist in the remote repositories are forgotten.
+     *
+     * @return {@code true} if branches missing from the remote-tracking branches are forgotten.
+     */
+    public boolean isPruneStaleBranches() {
+        return pruneStaleBranches;
+    }
+
+    @DataBoundSetter
+    public void setPruneStaleBranches(boolean pruneStaleBranches) {
+        this.pruneStaleBranches = pruneStaleBranches;
+    }
+
+    /**
+     * Applies the retention policy to the build data about to be recorded with a build.
+     *
+     * @param scm       the SCM.
+     * @param build     the build.
+     * @param git       the client, its remote-tracking branches are up to date.
+     * @param listener  build log.
+     * @param buildData the build data of the build.
+     * @throws InterruptedException when interrupted
+     * @throws GitException on git error
+     */
+    public void apply(GitSCM scm, Run<?, ?> build, GitClient git, TaskListener listener, BuildData buildData)
+            throws InterruptedException, GitException {
+        Build lastBuild = buildData.lastBuild;
+        List<Map.Entry<String, Build>> entries = new ArrayList<>(buildData.getBuildsByBranchName().entrySet());
+        Set<String> remove = new HashSet<>();
+
+        if (pruneStaleBranches) {
+            Set<String> remoteBranches = new HashSet<>();
+            for (Branch b : git.getRemoteBranches()) {
+                remoteBranches.add(b.getName());
+            }
+            Set<String> remoteNames = new HashSet<>();
+            for (UserRemoteConfig uc : scm.getUserRemoteConfigs()) {
+                String name = uc.getName();
+                remoteNames.add(name == null || name.isEmpty() ? "origin" : name);
+            }
+            for (Map.Entry<String, Build> entry : entries) {
+                String name = entry.getKey();
+                String shortName = name.startsWith(Constants.R_REMOTES)
+                        ? name.substring(Constants.R_REMOTES.length())
+                        : name;
+                int slash = shortName.indexOf('/');
+                if (slash > 0 && remoteNames.contains(shortName.substring(0, slash))
+                        && !remoteBranches.contains(shortName) && !remoteBranches.contains(name)) {
+                    remove.add(name);
+                }
+            }
+        }
+
+        if (maxAge > 0) {
+            for (Map.Entry<String, Build> entry : entries) {
+                if (entry.getValue().getBuildNumber() <= build.getNumber() - maxAge) {
+                    remove.add(entry.getKey());
+                }
+            }
+        }
+
+        if (maxBranches > 0) {
+            List<Map.Entry<String, Build>> remaining = new ArrayList<>();
+            for (Map.Entry<String, Build> entry : entries) {
+                if (!remove.contains(entry.getKey())) {
+                    remaining.add(entry);
+                }
+            }
+            if (remaining.size() > maxBranches) {
+                // most recently built first
+                Collections.sort(remaining, new Comparator<Map.Entry<String, Build>>() {
+                    @Override
+                    public int compare(Map.Entry<String, Build> o1, Map.Entry<String, Build> o2) {
+                        int n1 = o1.getValue().getBuildNumber();
+                        int n2 = o2.getValue().getBuildNumber();
+                        return n1 < n2 ? 1 : n1 == n2 ? o1.getKey().compareTo(o2.getKey()) : -1;
+                    }
+                });
+                for (Map.Entry<String, Build> entry : remaining.subList(maxBranches, remaining.size())) {
+                    remove.add(entry.getKey());
+                }
+            }
+        }
+
+        // never forget what the current build is building
+        for (Map.Entry<String, Build> entry : entries) {
+            if (entry.getValue() == lastBuild) {
+                remove.remove(entry.getKey());
+            }
+        }
+        int removed = buildData.removeBuildsOfBranches(remove);
+        if (removed > 0) {
+            listener.getLogger().println("Forgetting the last built revision of " + removed + " branches");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BuildDataRetention that = (BuildDataRetention) o;
+        return maxBranches == that.maxBranches
+                && maxAge == that.maxAge
+                && pruneStaleBranches == that.pruneStaleBranches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int result = maxBranches;
+        result = 31 * result + maxAge;
+        result = 31 * result + (pruneStaleBranches ? 1 : 0);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "BuildDataRetention{" +
+                "maxBranches=" + maxBranches +
+                ", maxAge=" + maxAge +
+                ", pruneStaleBranches=" + pruneStaleBranches +
+                '}';
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return "Limit the branch build history";
+        }
+    }
+}
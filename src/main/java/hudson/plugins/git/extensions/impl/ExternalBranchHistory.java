@@ -0,0 +1,59 @@
+package hudson.plugins.git.extensions.impl;
+
+import hudson.Extension;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import hudson.plugins.git.util.BuildData;
+import hudson.plugins.git.util.BuildDataStore;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Keeps the branch build history of the job in a {@link BuildDataStore} beside the job configuration instead of
+ * copying it into the {@link BuildData} of every build.
+ */
+public class ExternalBranchHistory extends GitSCMExtension {
+    @DataBoundConstructor
+    public ExternalBranchHistory() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return o instanceof ExternalBranchHistory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return ExternalBranchHistory.class.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "ExternalBranchHistory{}";
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return "Store the branch build history beside the job configuration";
+        }
+    }
+}
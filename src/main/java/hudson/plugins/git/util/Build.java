@@ -14,7 +14,10 @@ import java.io.Serializable;
 /**
  * Remembers which build built which {@link Revision}.
  *
- * @see BuildData#buildsByBranchName
+ * <p>
+ * A build is shared by the {@link BuildData} of the following builds, so it must not be modified once saved.
+ *
+ * @see BuildData#getBuildsByBranchName()
  */
 @ExportedBean(defaultVisibility = 999)
 public class Build implements Serializable, Cloneable {
@@ -10,9 +10,9 @@ import hudson.plugins.git.Revision;
 import hudson.plugins.git.UserRemoteConfig;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import org.eclipse.jgit.lib.ObjectId;
@@ -45,8 +45,13 @@ public class BuildData implements Action, Serializable, Cloneable {
      * <p>
      * This map contains all the branches we've built in the past (including the build that this {@link BuildData}
      * is attached to)
+     *
+     * <p>
+     * A {@link #clone()} shares this map (and its {@link Build} values) with the original until either of them
+     * records or removes a build, so it is only modified through {@link #saveBuild(Build)} and
+     * {@link #removeBuildsOfBranches(Collection)} and only exposed read-only by {@link #getBuildsByBranchName()}.
      */
-    public Map<String, Build> buildsByBranchName = new HashMap<>();
+    private Map<String, Build> buildsByBranchName = new HashMap<>();
 
     /**
      * The last build that we did (among the values in {@link #buildsByBranchName}.)
@@ -69,6 +74,25 @@ public class BuildData implements Action, Serializable, Cloneable {
     @CheckForNull
     private Integer index;
 
+    /**
+     * When set, {@link #buildsByBranchName} only holds the builds of this build's own revision and the complete
+     * history is kept in the named {@link BuildDataStore} of the job.
+     */
+    @CheckForNull
+    private String branchHistory;
+
+    /**
+     * Lazily built index of {@link #buildsByBranchName} by the SHA1 of their {@link Build#revision} and
+     * {@link Build#marked} revisions, see {@link #getLastBuild(ObjectId)}. Every change of
+     * {@link #buildsByBranchName} either updates it or resets it to {@code null}.
+     */
+    private transient Map<ObjectId, Build> buildsBySha1;
+
+    /**
+     * Set when {@link #buildsByBranchName} is shared with a clone and has to be copied before being modified.
+     */
+    private transient boolean buildsByBranchNameShared;
+
     public BuildData() {
     }
 
@@ -125,6 +149,26 @@ public class BuildData implements Action, Serializable, Cloneable {
         return index;
     }
 
+    /**
+     * Gets the name of the {@link BuildDataStore} holding the complete branch build history, if this build data
+     * only records the build's own revision.
+     *
+     * @return the store name, or {@code null} if {@link #getBuildsByBranchName()} is complete.
+     */
+    @CheckForNull
+    public String getBranchHistory() {
+        return branchHistory;
+    }
+
+    /**
+     * Sets the name of the {@link BuildDataStore} holding the complete branch build history.
+     *
+     * @param branchHistory the store name, or {@code null} if {@link #getBuildsByBranchName()} is complete.
+     */
+    public void setBranchHistory(@CheckForNull String branchHistory) {
+        this.branchHistory = branchHistory;
+    }
+
     @Restricted(NoExternalUse.class) // only used from stapler/jelly
     @CheckForNull
     public Run<?,?> getOwningRun() {
@@ -145,6 +189,7 @@ public class BuildData implements Action, Serializable, Cloneable {
         }
 
         this.buildsByBranchName = newBuildsByBranchName;
+        this.buildsBySha1 = null;
 
         if(this.remoteUrls == null)
             this.remoteUrls = new HashSet<>();
@@ -165,26 +210,93 @@ public class BuildData implements Action, Serializable, Cloneable {
     public Build getLastBuild(ObjectId sha1) {
         // fast check by first checking most recent build
         if (lastBuild != null && (lastBuild.revision.getSha1().equals(sha1) || lastBuild.marked.getSha1().equals(sha1))) return lastBuild;
-        try {
-            for(Build b : buildsByBranchName.values()) {
-                if(b.revision.getSha1().equals(sha1) || b.marked.getSha1().equals(sha1))
-                    return b;
-            }
-
+        if (sha1 == null) {
             return null;
         }
-        catch(Exception ex) {
-            return null;
+        return getBuildsBySha1().get(sha1);
+    }
+
+    /**
+     * Returns the index of {@link #buildsByBranchName} by SHA1, (re)building it if needed.
+     */
+    private Map<ObjectId, Build> getBuildsBySha1() {
+        if (buildsBySha1 != null) {
+            return buildsBySha1;
+        }
+        Map<ObjectId, Build> index = new HashMap<>();
+        for (Build b : buildsByBranchName.values()) {
+            if (b != null) {
+                indexBuild(index, b, false);
+            }
+        }
+        buildsBySha1 = index;
+        return index;
+    }
+
+    /**
+     * Adds a build to the index. When several builds have the same SHA1, the one with the highest build number wins
+     * unless {@code latest} is set, in which case the supplied build always wins.
+     */
+    private static void indexBuild(Map<ObjectId, Build> index, Build build, boolean latest) {
+        for (Revision r : new Revision[] {build.revision, build.marked}) {
+            ObjectId sha1 = r == null ? null : r.getSha1();
+            if (sha1 == null) {
+                continue;
+            }
+            Build existing = index.get(sha1);
+            if (latest || existing == null || existing.hudsonBuildNumber < build.hudsonBuildNumber) {
+                index.put(sha1, build);
+            }
         }
     }
 
     public void saveBuild(Build build) {
     	lastBuild = build;
+        copyBuildsByBranchNameIfShared();
+        boolean indexed = buildsBySha1 != null;
+        boolean replaced = false;
     	for(Branch branch : build.marked.getBranches()) {
-            buildsByBranchName.put(fixNull(branch.getName()), build);
+            Build old = buildsByBranchName.put(fixNull(branch.getName()), build);
+            replaced |= old != null && old != build;
     	}
         for(Branch branch : build.revision.getBranches()) {
-            buildsByBranchName.put(fixNull(branch.getName()), build);
+            Build old = buildsByBranchName.put(fixNull(branch.getName()), build);
+            replaced |= old != null && old != build;
+        }
+        if (indexed && !replaced) {
+            indexBuild(buildsBySha1, build, true);
+        } else {
+            // replaced builds may no longer be reachable, let the index be rebuilt on next use
+            buildsBySha1 = null;
+        }
+    }
+
+    /**
+     * Forgets the builds recorded for the given branches. The {@link #lastBuild} is kept even if all of its branches
+     * are removed.
+     *
+     * @param branchNames names of the branches to remove.
+     * @return the number of branches that were removed.
+     */
+    public int removeBuildsOfBranches(Collection<String> branchNames) {
+        int removed = 0;
+        for (String branchName : branchNames) {
+            if (buildsByBranchName.containsKey(branchName)) {
+                copyBuildsByBranchNameIfShared();
+                buildsByBranchName.remove(branchName);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            buildsBySha1 = null;
+        }
+        return removed;
+    }
+
+    private void copyBuildsByBranchNameIfShared() {
+        if (buildsByBranchNameShared) {
+            buildsByBranchName = new HashMap<>(buildsByBranchName);
+            buildsByBranchNameShared = false;
         }
     }
 
@@ -202,9 +314,14 @@ public class BuildData implements Action, Serializable, Cloneable {
         return lastBuild==null?null:lastBuild.revision;
     }
 
+    /**
+     * Gets the last build of each branch built so far.
+     *
+     * @return a read-only view of the builds by branch name.
+     */
     @Exported
     public Map<String,Build> getBuildsByBranchName() {
-        return buildsByBranchName;
+        return Collections.unmodifiableMap(buildsByBranchName);
     }
 
     public void setScmName(String scmName)
@@ -233,6 +350,11 @@ public class BuildData implements Action, Serializable, Cloneable {
         return remoteUrls.contains(remoteUrl);
     }
 
+    /**
+     * Creates a copy of this build data to be updated by a subsequent build. The copy shares the {@link Build}
+     * records and, until either side records or removes a build, the {@link #buildsByBranchName} map with this
+     * instance. The records are not copied, so a {@link Build} must not be modified once it has been saved.
+     */
     @Override
     public BuildData clone() {
         BuildData clone;
@@ -243,32 +365,17 @@ public class BuildData implements Action, Serializable, Cloneable {
             throw new RuntimeException("Error cloning BuildData", e);
         }
 
-        IdentityHashMap<Build, Build> clonedBuilds = new IdentityHashMap<>();
-
-        clone.buildsByBranchName = new HashMap<>();
-        clone.remoteUrls = new HashSet<>();
-
-        for (Map.Entry<String, Build> buildByBranchName : buildsByBranchName.entrySet()) {
-            String branchName = buildByBranchName.getKey();
-            if (branchName == null) {
-                branchName = "";
-            }
-            Build build = buildByBranchName.getValue();
-            Build clonedBuild = clonedBuilds.get(build);
-            if (clonedBuild == null) {
-                clonedBuild = build.clone();
-                clonedBuilds.put(build, clonedBuild);
-            }
-            clone.buildsByBranchName.put(branchName, clonedBuild);
-        }
-
-        if (lastBuild != null) {
-            clone.lastBuild = clonedBuilds.get(lastBuild);
-            if (clone.lastBuild == null) {
-                clone.lastBuild = lastBuild.clone();
-                clonedBuilds.put(lastBuild, clone.lastBuild);
+        if (buildsByBranchName.containsKey(null)) {
+            clone.buildsByBranchName = new HashMap<>();
+            for (Map.Entry<String, Build> buildByBranchName : buildsByBranchName.entrySet()) {
+                clone.buildsByBranchName.put(fixNull(buildByBranchName.getKey()), buildByBranchName.getValue());
             }
+        } else {
+            buildsByBranchNameShared = true;
+            clone.buildsByBranchNameShared = true;
         }
+        clone.buildsBySha1 = null;
+        clone.remoteUrls = new HashSet<>();
 
         for(String remoteUrl : getRemoteUrls())
         {
@@ -0,0 +1,259 @@
+package hudson.plugins.git.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import hudson.plugins.git.Branch;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Keeps the branch build history of a job ({@link BuildData#getBuildsByBranchName()}) in a file beside the job
+ * configuration, so that builds only need to record their own {@link Build} (see {@link #delta(BuildData)}).
+ *
+ * <p>
+ * The file holds the complete {@link BuildData} as recorded by the most recent build to check out, which is what the
+ * {@link BuildData} action of that build would have contained otherwise.
+ *
+ * <p>
+ * Stores are kept per job and point into the job root directory, so they are dropped when the job is renamed, moved
+ * or deleted.
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildDataStore {
+
+    private static final Logger LOGGER = Logger.getLogger(BuildDataStore.class.getName());
+
+    private static final Map<Job<?, ?>, Map<String, BuildDataStore>> STORES = new WeakHashMap<>();
+
+    private final XmlFile file;
+
+    private final String name;
+
+    /**
+     * The loaded content of {@link #file}, {@code null} until loaded.
+     */
+    private Snapshot snapshot;
+
+    private BuildDataStore(@NonNull Job<?, ?> job, @NonNull String name) {
+        this.name = name;
+        this.file = new XmlFile(Run.XSTREAM, new File(job.getRootDir(), name));
+    }
+
+    /**
+     * Returns the name of the store file holding the history of the given SCM configuration.
+     *
+     * @param scmName    the SCM name.
+     * @param remoteUrls the configured remote repository URLs.
+     * @return the file name, relative to the job root directory.
+     */
+    @NonNull
+    public static String nameOf(@CheckForNull String scmName, @NonNull Collection<String> remoteUrls) {
+        List<String> urls = new ArrayList<>(remoteUrls);
+        Collections.sort(urls);
+        return "git-branch-history-" + Util.getDigestOf(Util.fixNull(scmName) + '\n' + urls).substring(0, 16) + ".xml";
+    }
+
+    /**
+     * Returns the store of a job.
+     *
+     * @param job  the job.
+     * @param name the file name, see {@link #nameOf(String, Collection)}.
+     * @return the store.
+     */
+    @NonNull
+    public static BuildDataStore of(@NonNull Job<?, ?> job, @NonNull String name) {
+        synchronized (STORES) {
+            Map<String, BuildDataStore> stores = STORES.get(job);
+            if (stores == null) {
+                stores = new HashMap<>();
+                STORES.put(job, stores);
+            }
+            BuildDataStore store = stores.get(name);
+            if (store == null) {
+                store = new BuildDataStore(job, name);
+                stores.put(name, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Returns the name of the store file, as recorded in {@link BuildData#getBranchHistory()}.
+     *
+     * @return the file name, relative to the job root directory.
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a copy of the most recently recorded build data.
+     *
+     * @return the build data, or {@code null} if nothing has been recorded yet.
+     */
+    @CheckForNull
+    public synchronized BuildData getLatest() {
+        Snapshot s = load();
+        return s == null || s.data == null ? null : s.data.clone();
+    }
+
+    /**
+     * Returns a copy of the build data recorded by the given build, if it is the most recently recorded one.
+     *
+     * @param buildNumber the build number.
+     * @return the build data, or {@code null} if a later build has been recorded since or nothing was recorded.
+     */
+    @CheckForNull
+    public synchronized BuildData get(int buildNumber) {
+        Snapshot s = load();
+        return s == null || s.data == null || s.buildNumber != buildNumber ? null : s.data.clone();
+    }
+
+    /**
+     * Returns the number of the build which recorded the most recent build data.
+     *
+     * @return the build number, or {@code -1} if nothing has been recorded yet.
+     */
+    public synchronized int getBuildNumber() {
+        Snapshot s = load();
+        return s == null || s.data == null ? -1 : s.buildNumber;
+    }
+
+    /**
+     * Records the build data of a build.
+     *
+     * <p>
+     * Concurrent builds of the same job each record the history they started from plus their own build, so the
+     * recorded build data is merged with the previously recorded one: each branch keeps its most recent build. The
+     * build data of the build with the highest number stays the most recent one, even if it recorded first.
+     *
+     * @param buildNumber the number of the build.
+     * @param data        the complete build data of the build.
+     * @throws IOException if the store cannot be written.
+     */
+    public synchronized void record(int buildNumber, @NonNull BuildData data) throws IOException {
+        Snapshot previous = load();
+        Snapshot s = new Snapshot();
+        if (previous == null || previous.data == null) {
+            s.buildNumber = buildNumber;
+            s.data = data.clone();
+        } else if (previous.buildNumber <= buildNumber) {
+            s.buildNumber = buildNumber;
+            s.data = merge(data, previous.data);
+        } else {
+            s.buildNumber = previous.buildNumber;
+            s.data = merge(previous.data, data);
+        }
+        file.write(s);
+        snapshot = s;
+    }
+
+    /**
+     * Adds the builds of older build data to a copy of newer build data, for the branches whose build is more
+     * recent in the older build data. The {@link BuildData#lastBuild} of the newer build data is kept.
+     */
+    private static BuildData merge(BuildData newer, BuildData older) {
+        BuildData merged = newer.clone();
+        Build lastBuild = merged.lastBuild;
+        for (Build build : older.getBuildsByBranchName().values()) {
+            if (isMoreRecent(build, merged)) {
+                merged.saveBuild(build);
+            }
+        }
+        merged.lastBuild = lastBuild;
+        return merged;
+    }
+
+    private static boolean isMoreRecent(Build build, BuildData data) {
+        for (Branch branch : build.getRevision().getBranches()) {
+            Build recorded = data.getLastBuildOfBranch(Util.fixNull(branch.getName()));
+            if (recorded != null && recorded.getBuildNumber() >= build.getBuildNumber()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the build data recorded in the build itself: only its own {@link Build} and a pointer to this store.
+     *
+     * @param data the complete build data of the build.
+     * @return the build data to attach to the build.
+     */
+    @NonNull
+    public BuildData delta(@NonNull BuildData data) {
+        BuildData delta = new BuildData(data.getScmName());
+        for (String remoteUrl : data.getRemoteUrls()) {
+            delta.addRemoteUrl(remoteUrl);
+        }
+        if (data.lastBuild != null) {
+            delta.saveBuild(data.lastBuild);
+        }
+        delta.setIndex(data.getIndex());
+        delta.setBranchHistory(name);
+        return delta;
+    }
+
+    @CheckForNull
+    private Snapshot load() {
+        if (snapshot == null && file.exists()) {
+            try {
+                snapshot = (Snapshot) file.read();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to load branch build history from " + file, e);
+            }
+        }
+        return snapshot;
+    }
+
+    private static void forget(Item item) {
+        if (item instanceof Job) {
+            synchronized (STORES) {
+                STORES.remove(item);
+            }
+        }
+    }
+
+    /**
+     * Drops the stores of jobs whose root directory changed. Jenkins reports the jobs inside a moved folder as well.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            forget(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            forget(item);
+        }
+    }
+
+    /**
+     * The persisted form of the store.
+     */
+    private static class Snapshot {
+        private int buildNumber;
+        private BuildData data;
+    }
+}
@@ -71,6 +71,8 @@ public class DefaultBuildChooser extends BuildChooser {
         }
 
         Collection<Revision> revisions = new HashSet<>();
+        // every candidate name is resolved from one read of the refs rather than one rev-parse each
+        RefSnapshot refs = RefSnapshot.of(git);
 
         // if it doesn't contain '/' then it could be an unqualified branch
         if (!branchSpec.contains("/")) {
@@ -81,7 +83,7 @@ public class DefaultBuildChooser extends BuildChooser {
                 String repository = config.getName();
                 String fqbn = repository + "/" + branchSpec;
                 verbose(listener, "Qualifying {0} as a branch in repository {1} -> {2}", branchSpec, repository, fqbn);
-                revisions.addAll(getHeadRevision(isPollCall, fqbn, git, listener, data));
+                revisions.addAll(getHeadRevision(isPollCall, fqbn, git, refs, listener, data));
             }
         } else {
             // either the branch is qualified (first part should match a valid remote)
@@ -109,14 +111,14 @@ public class DefaultBuildChooser extends BuildChooser {
                 possibleQualifiedBranches.add(fqbn);
             }
             for (String fqbn : possibleQualifiedBranches) {
-              revisions.addAll(getHeadRevision(isPollCall, fqbn, git, listener, data));
+              revisions.addAll(getHeadRevision(isPollCall, fqbn, git, refs, listener, data));
             }
         }
 
         if (revisions.isEmpty()) {
             // the 'branch' could actually be a non branch reference (for example a tag or a gerrit change)
 
-            revisions = getHeadRevision(isPollCall, branchSpec, git, listener, data);
+            revisions = getHeadRevision(isPollCall, branchSpec, git, refs, listener, data);
             if (!revisions.isEmpty()) {
                 verbose(listener, "{0} seems to be a non-branch reference (tag?)");
             }
@@ -125,9 +127,9 @@ public class DefaultBuildChooser extends BuildChooser {
         return revisions;
     }
 
-    private Collection<Revision> getHeadRevision(boolean isPollCall, String singleBranch, GitClient git, TaskListener listener, BuildData data) throws InterruptedException {
+    private Collection<Revision> getHeadRevision(boolean isPollCall, String singleBranch, GitClient git, RefSnapshot refs, TaskListener listener, BuildData data) throws InterruptedException {
         try {
-            ObjectId sha1 = git.revParse(singleBranch);
+            ObjectId sha1 = refs.revParse(git, singleBranch);
             verbose(listener, "rev-parse {0} -> {1}", singleBranch, sha1);
 
             // if polling for changes don't select something that has
@@ -207,21 +209,14 @@ public class DefaultBuildChooser extends BuildChooser {
 
         // 2. Filter out any revisions that don't contain any branches that we
         // actually care about (spec)
+        BranchSpecMatcher matcher = BranchSpecMatcher.compile(gitSCM.getBranches(), env);
         for (Iterator<Revision> i = revs.iterator(); i.hasNext();) {
             Revision r = i.next();
 
             // filter out uninteresting branches
             for (Iterator<Branch> j = r.getBranches().iterator(); j.hasNext();) {
                 Branch b = j.next();
-                boolean keep = false;
-                for (BranchSpec bspec : gitSCM.getBranches()) {
-                    if (bspec.matches(b.getName(), env)) {
-                        keep = true;
-                        break;
-                    }
-                }
-
-                if (!keep) {
+                if (!matcher.matches(b.getName())) {
                     verbose(listener, "Ignoring {0} because it doesn''t match branch specifier", b);
                     j.remove();
                 }
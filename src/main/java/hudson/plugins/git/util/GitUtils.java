@@ -8,6 +8,7 @@ import hudson.Launcher;
 import hudson.model.*;
 import hudson.plugins.git.Branch;
 import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.BranchSpecMatcher;
 import hudson.plugins.git.GitException;
 import hudson.plugins.git.Revision;
 import hudson.remoting.VirtualChannel;
@@ -17,6 +18,7 @@ import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.RepositoryCallback;
@@ -76,9 +78,10 @@ public class GitUtils implements Serializable {
             }
             r.getBranches().add(b);
         }
-        for (String tag : git.getTagNames(null)) {
-            String tagRef = Constants.R_TAGS + tag;
-            ObjectId objectId = git.revParse(tagRef);
+        // all tags are resolved from one read of the refs rather than one rev-parse each
+        for (Map.Entry<String, ObjectId> tag : RefSnapshot.of(git).getRefs(Constants.R_TAGS).entrySet()) {
+            String tagRef = tag.getKey();
+            ObjectId objectId = tag.getValue();
             Revision r = revisions.get(objectId);
             if (r == null) {
                 r = new Revision(objectId);
@@ -122,20 +125,21 @@ public class GitUtils implements Serializable {
     }
 
     public Revision sortBranchesForRevision(Revision revision, List<BranchSpec> branchOrder, EnvVars env) {
-        ArrayList<Branch> orderedBranches = new ArrayList<>(revision.getBranches().size());
-        ArrayList<Branch> revisionBranches = new ArrayList<>(revision.getBranches());
-
-        for(BranchSpec branchSpec : branchOrder) {
-            for (Iterator<Branch> i = revisionBranches.iterator(); i.hasNext();) {
-                Branch b = i.next();
-                if (branchSpec.matches(b.getName(), env)) {
-                    i.remove();
-                    orderedBranches.add(b);
-                }
-            }
+        // each branch goes after the branches matching an earlier spec, keeping the original order otherwise
+        BranchSpecMatcher matcher = BranchSpecMatcher.compile(branchOrder, env);
+        List<List<Branch>> branchesBySpec = new ArrayList<>(matcher.size() + 1);
+        for (int i = 0; i <= matcher.size(); i++) {
+            branchesBySpec.add(new ArrayList<Branch>());
+        }
+        for (Branch b : revision.getBranches()) {
+            int i = matcher.indexOf(b.getName());
+            branchesBySpec.get(i == -1 ? matcher.size() : i).add(b);
         }
 
-        orderedBranches.addAll(revisionBranches);
+        ArrayList<Branch> orderedBranches = new ArrayList<>(revision.getBranches().size());
+        for (List<Branch> branches : branchesBySpec) {
+            orderedBranches.addAll(branches);
+        }
         return new Revision(revision.getSha1(), orderedBranches);
     }
 
@@ -162,13 +166,6 @@ public class GitUtils implements Serializable {
         try {
             return git.withRepository(new RepositoryCallback<List<Revision>>() {
                 public List<Revision> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
-
-                    // Commit nodes that we have already reached
-                    Set<RevCommit> visited = new HashSet<>();
-                    // Commits nodes that are tips if we don't reach them walking back from
-                    // another node
-                    Map<RevCommit, Revision> tipCandidates = new HashMap<>();
-
                     long calls = 0;
                     final long start = System.currentTimeMillis();
 
@@ -180,39 +177,45 @@ public class GitUtils implements Serializable {
 
                     try (RevWalk walk = new RevWalk(repo)) {
                         walk.setRetainBody(false);
+                        // a commit passed in, which is a tip unless reached from another one
+                        RevFlag candidate = walk.newFlag("CANDIDATE");
 
-                        // Each commit passed in starts as a potential tip.
-                        // We walk backwards in the commit's history, until we reach the
-                        // beginning or a commit that we have already visited. In that case,
-                        // we mark that one as not a potential tip.
-                        for (Revision r : revisions) {
-                            walk.reset();
+                        // The first revision of each commit, in the order passed in
+                        Map<RevCommit, Revision> tipCandidates = new LinkedHashMap<>();
+                        for (Revision r : l) {
                             RevCommit head = walk.parseCommit(r.getSha1());
-
-                            if (visited.contains(head)) {
-                              continue;
+                            if (!head.has(candidate)) {
+                                head.add(candidate);
+                                tipCandidates.put(head, r);
                             }
+                        }
 
-                            tipCandidates.put(head, r);
+                        // One walk from the parents of all the candidates: every candidate it reaches is an
+                        // ancestor of another one. The last unreached candidate cannot be the ancestor of another
+                        // one, so the walk can stop there.
+                        for (RevCommit head : tipCandidates.keySet()) {
+                            for (RevCommit parent : head.getParents()) {
+                                walk.markStart(parent);
+                            }
+                        }
 
-                            walk.markStart(head);
-                            for (RevCommit commit : walk) {
-                                calls++;
-                                if (visited.contains(commit)) {
-                                    tipCandidates.remove(commit);
+                        for (RevCommit commit : walk) {
+                            calls++;
+                            if (commit.has(candidate)) {
+                                tipCandidates.remove(commit);
+                                if (tipCandidates.size() == 1) {
                                     break;
                                 }
-                                visited.add(commit);
                             }
                         }
-                    }
 
-                    if (log)
-                        LOGGER.fine(MessageFormat.format(
-                                "Computed merge bases in {0} commit steps and {1} ms", calls,
-                                (System.currentTimeMillis() - start)));
+                        if (log)
+                            LOGGER.fine(MessageFormat.format(
+                                    "Computed merge bases in {0} commit steps and {1} ms", calls,
+                                    (System.currentTimeMillis() - start)));
 
-                    return new ArrayList<>(tipCandidates.values());
+                        return new ArrayList<>(tipCandidates.values());
+                    }
                 }
             });
         } catch (IOException e) {
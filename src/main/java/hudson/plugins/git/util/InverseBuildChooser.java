@@ -45,7 +45,7 @@ public class InverseBuildChooser extends BuildChooser {
         EnvVars env = context.getEnvironment();
         GitUtils utils = new GitUtils(listener, git);
         List<Revision> branchRevs = new ArrayList<>(utils.getAllBranchRevisions());
-        List<BranchSpec> specifiedBranches = gitSCM.getBranches();
+        BranchSpecMatcher specifiedBranches = BranchSpecMatcher.compile(gitSCM.getBranches(), env);
 
         // Iterate over all the revisions pointed to by branches in the repository
         for (Iterator<Revision> i = branchRevs.iterator(); i.hasNext(); ) {
@@ -56,12 +56,10 @@ public class InverseBuildChooser extends BuildChooser {
                 Branch branch = j.next();
 
                 // Check whether this branch matches a branch spec from the job config
-                for (BranchSpec spec : specifiedBranches) {
-                    // If the branch matches, throw it away as we do *not* want to build it
-                    if (spec.matches(branch.getName(), env) || HEAD.matches(branch.getName(), env)) {
-                        j.remove();
-                        break;
-                    }
+                // If the branch matches, throw it away as we do *not* want to build it
+                if (specifiedBranches.size() > 0
+                        && (specifiedBranches.matches(branch.getName()) || HEAD.matches(branch.getName(), env))) {
+                    j.remove();
                 }
             }
 
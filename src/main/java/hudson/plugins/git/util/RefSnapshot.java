@@ -0,0 +1,120 @@
+package hudson.plugins.git.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.plugins.git.GitException;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+
+/**
+ * All the refs of a repository with their peeled object ids, read in one pass from the ref database, so that
+ * callers resolving many refs do not need one {@link GitClient#revParse(String)} (a process with command line git)
+ * per ref.
+ */
+public final class RefSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Full ref name to peeled object id.
+     */
+    private final Map<String, ObjectId> refs;
+
+    private RefSnapshot(Map<String, ObjectId> refs) {
+        this.refs = refs;
+    }
+
+    /**
+     * Reads all the refs of a repository.
+     *
+     * @param git the repository.
+     * @return the refs.
+     * @throws IOException on input or output error
+     * @throws InterruptedException when interrupted
+     * @throws GitException on git error
+     */
+    @NonNull
+    public static RefSnapshot of(@NonNull GitClient git) throws IOException, InterruptedException, GitException {
+        return git.withRepository(new ReadRefs());
+    }
+
+    /**
+     * Returns the refs whose name starts with a prefix.
+     *
+     * @param prefix the prefix, e.g. {@link Constants#R_TAGS}.
+     * @return full ref names to peeled object ids, sorted by name.
+     */
+    @NonNull
+    public Map<String, ObjectId> getRefs(@NonNull String prefix) {
+        Map<String, ObjectId> result = new TreeMap<>();
+        for (Map.Entry<String, ObjectId> entry : refs.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolves a ref the way {@code git rev-parse} abbreviates ref names, trying {@code name}, {@code refs/name},
+     * {@code refs/tags/name}, {@code refs/heads/name}, {@code refs/remotes/name} and
+     * {@code refs/remotes/name/HEAD} in turn.
+     *
+     * @param name the ref name.
+     * @return the peeled object id, or {@code null} if no ref of the snapshot has that name.
+     */
+    @CheckForNull
+    public ObjectId resolve(@NonNull String name) {
+        for (String prefix : new String[] {"", Constants.R_REFS, Constants.R_TAGS, Constants.R_HEADS, Constants.R_REMOTES}) {
+            ObjectId id = refs.get(prefix + name);
+            if (id != null) {
+                return id;
+            }
+        }
+        return refs.get(Constants.R_REMOTES + name + "/" + Constants.HEAD);
+    }
+
+    /**
+     * Resolves a revision to the commit it names, using the snapshot for ref names and {@code git} for anything the
+     * snapshot does not hold, such as revision expressions, abbreviated object ids or {@code FETCH_HEAD}.
+     *
+     * @param git  the repository the snapshot was read from.
+     * @param name the revision.
+     * @return the commit id.
+     * @throws GitException if the revision does not exist
+     * @throws InterruptedException when interrupted
+     */
+    @NonNull
+    public ObjectId revParse(@NonNull GitClient git, @NonNull String name) throws GitException, InterruptedException {
+        ObjectId id = resolve(name);
+        return id != null ? id : git.revParse(name);
+    }
+
+    private static class ReadRefs implements RepositoryCallback<RefSnapshot> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public RefSnapshot invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            Map<String, ObjectId> refs = new HashMap<>();
+            for (Ref ref : repo.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+                Ref peeled = repo.peel(ref);
+                ObjectId id = peeled.getPeeledObjectId() != null ? peeled.getPeeledObjectId() : peeled.getObjectId();
+                if (id != null) {
+                    refs.put(ref.getName(), id.copy());
+                }
+            }
+            return new RefSnapshot(Collections.unmodifiableMap(refs));
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package hudson.plugins.git.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.plugins.git.GitException;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Process wide cache of the remote head advertisements used by workspace-less polling.
+ *
+ * <p>
+ * Entries are keyed by the normalized remote URL and the credentials used to access it. Concurrent requests for
+ * the same key are coalesced so that only one {@code ls-remote} is in flight per remote at any time; the other
+ * callers wait for and share its result. A completed advertisement is reused for {@link #TTL} milliseconds,
+ * which defaults to {@code 0} (only in-flight requests are shared).
+ */
+@Restricted(NoExternalUse.class)
+public final class RemoteHeadsCache {
+
+    private static final Logger LOGGER = Logger.getLogger(RemoteHeadsCache.class.getName());
+
+    /**
+     * How long (in milliseconds) a completed remote head advertisement may be reused by later polls.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the cache lifetime")
+    public static long TTL = Long.getLong(RemoteHeadsCache.class.getName() + ".ttl", 0L);
+
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private static final AtomicLong HITS = new AtomicLong();
+
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private RemoteHeadsCache() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Returns the remote heads of the given repository, sharing the {@code ls-remote} with any concurrent or
+     * sufficiently recent request for the same remote.
+     *
+     * @param git           the client to use if the advertisement has to be fetched.
+     * @param url           the remote repository URL.
+     * @param credentialsId the id of the credentials used to access the remote, or {@code null}.
+     * @return a mutable copy of the remote heads, or {@code null} if the client did not return any.
+     * @throws GitException         on git error
+     * @throws InterruptedException when interrupted
+     */
+    @CheckForNull
+    public static Map<String, ObjectId> getHeadRev(@NonNull final GitClient git, @NonNull final String url,
+                                                   @CheckForNull String credentialsId)
+            throws GitException, InterruptedException {
+        String key = cacheKey(url, credentialsId);
+        while (true) {
+            long now = System.currentTimeMillis();
+            Entry entry = ENTRIES.get(key);
+            if (entry != null && !entry.isStale(now)) {
+                HITS.incrementAndGet();
+                try {
+                    return copy(entry.get());
+                } catch (InterruptedException e) {
+                    if (e != entry.failure) {
+                        throw e;
+                    }
+                    // the thread performing the request was interrupted, not us: try again
+                }
+            }
+            Entry created = new Entry(new Callable<Map<String, ObjectId>>() {
+                @Override
+                public Map<String, ObjectId> call() throws Exception {
+                    return git.getHeadRev(url);
+                }
+            });
+            boolean installed = entry == null
+                    ? ENTRIES.putIfAbsent(key, created) == null
+                    : ENTRIES.replace(key, entry, created);
+            if (!installed) {
+                // somebody else started a request for this remote, join it
+                continue;
+            }
+            MISSES.incrementAndGet();
+            expungeStale(now);
+            created.run();
+            if (TTL <= 0 || created.isFailed()) {
+                ENTRIES.remove(key, created);
+            }
+            return copy(created.get());
+        }
+    }
+
+    /**
+     * Returns the number of requests that were served from a cached or in-flight advertisement.
+     *
+     * @return the number of cache hits since startup.
+     */
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    /**
+     * Returns the number of requests that had to query the remote.
+     *
+     * @return the number of cache misses since startup.
+     */
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    /**
+     * Discards all cached advertisements.
+     */
+    public static void clear() {
+        ENTRIES.clear();
+    }
+
+    /**
+     * Builds the cache key for a remote. URLs that only differ by case of the scheme or host, an explicit default
+     * port, a trailing slash or (for remote servers) a trailing {@code .git} map to the same key.
+     *
+     * @param url           the remote repository URL.
+     * @param credentialsId the id of the credentials used to access the remote, or {@code null}.
+     * @return the cache key.
+     */
+    @NonNull
+    static String cacheKey(@NonNull String url, @CheckForNull String credentialsId) {
+        return (credentialsId == null ? "" : credentialsId) + '\n' + normalizeUrl(url);
+    }
+
+    /**
+     * Normalizes a remote repository URL, only folding differences which cannot name another repository: the scheme
+     * and host are lower cased, an explicit default port is removed, and trailing slashes are removed from the path.
+     * A trailing {@code .git} is only removed for network and scp-like URLs ({@code user@host:path}, relative to the
+     * home directory), which keep their syntax so they are not confused with an absolute path. Local paths and
+     * {@code file://} URLs keep their {@code .git}, since {@code /srv/repo} and {@code /srv/repo.git} can be
+     * different repositories.
+     *
+     * @param url the remote repository URL.
+     * @return the normalized URL, or {@code url} itself if it cannot be parsed.
+     */
+    @NonNull
+    public static String normalizeUrl(@NonNull String url) {
+        URIish uri;
+        try {
+            uri = new URIish(url);
+        } catch (URISyntaxException e) {
+            return url;
+        }
+        if (uri.getScheme() == null && uri.getHost() == null) {
+            // a local path, which git also looks up with .git appended, so only the trailing slashes are equivalent
+            return stripTrailingSlashes(url);
+        }
+        StringBuilder result = new StringBuilder();
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ENGLISH);
+        if (scheme != null) {
+            result.append(scheme).append("://");
+        }
+        if (uri.getUser() != null) {
+            result.append(uri.getUser()).append('@');
+        }
+        if (uri.getHost() != null) {
+            result.append(uri.getHost().toLowerCase(Locale.ENGLISH));
+        }
+        if (uri.getPort() > 0 && uri.getPort() != defaultPort(scheme)) {
+            result.append(':').append(uri.getPort());
+        }
+        String path = stripTrailingSlashes(uri.getPath() == null ? "" : uri.getPath());
+        if (path.endsWith(".git") && uri.getHost() != null && !"file".equals(scheme)) {
+            // only a server maps both to the same repository, file:// URLs are local paths
+            path = path.substring(0, path.length() - 4);
+        }
+        if (scheme == null) {
+            // scp-like syntax, the path is relative to the home directory unless it starts with a slash
+            result.append(':');
+        } else if (!path.startsWith("/")) {
+            result.append('/');
+        }
+        return result.append(path).toString();
+    }
+
+    private static String stripTrailingSlashes(String path) {
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    private static int defaultPort(@CheckForNull String scheme) {
+        if ("http".equals(scheme)) {
+            return 80;
+        }
+        if ("https".equals(scheme)) {
+            return 443;
+        }
+        if ("ssh".equals(scheme) || "git+ssh".equals(scheme) || "ssh+git".equals(scheme)) {
+            return 22;
+        }
+        if ("git".equals(scheme)) {
+            return 9418;
+        }
+        return -1;
+    }
+
+    private static void expungeStale(long now) {
+        for (Iterator<Entry> it = ENTRIES.values().iterator(); it.hasNext(); ) {
+            if (it.next().isStale(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    @CheckForNull
+    private static Map<String, ObjectId> copy(@CheckForNull Map<String, ObjectId> heads) {
+        // callers are free to modify the returned map (e.g. to drop heads not matching their refspecs)
+        return heads == null ? null : new HashMap<>(heads);
+    }
+
+    /**
+     * A single (possibly in-flight) remote head advertisement.
+     */
+    private static class Entry extends FutureTask<Map<String, ObjectId>> {
+        private volatile long completed = -1L;
+        private volatile Throwable failure;
+
+        Entry(Callable<Map<String, ObjectId>> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failure = t;
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            completed = System.currentTimeMillis();
+        }
+
+        boolean isFailed() {
+            return failure != null;
+        }
+
+        boolean isStale(long now) {
+            if (!isDone()) {
+                return false;
+            }
+            return failure != null || completed + TTL < now;
+        }
+
+        @Override
+        public Map<String, ObjectId> get() throws InterruptedException {
+            try {
+                return super.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof GitException) {
+                    throw (GitException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                LOGGER.log(Level.FINE, "Unexpected failure listing remote heads", cause);
+                throw new GitException(cause);
+            }
+        }
+    }
+}
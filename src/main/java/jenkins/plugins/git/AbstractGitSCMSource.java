@@ -52,6 +52,8 @@ import hudson.plugins.git.util.BuildChooser;
 import hudson.plugins.git.util.BuildChooserContext;
 import hudson.plugins.git.util.BuildChooserDescriptor;
 import hudson.plugins.git.util.BuildData;
+import hudson.plugins.git.util.RemoteHeadsCache;
+import hudson.remoting.VirtualChannel;
 import hudson.scm.SCM;
 import hudson.security.ACL;
 import java.io.File;
@@ -65,11 +67,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -79,13 +78,10 @@ import jenkins.plugins.git.traits.GitSCMExtensionTrait;
 import jenkins.plugins.git.traits.GitToolSCMSourceTrait;
 import jenkins.plugins.git.traits.RefSpecsSCMSourceTrait;
 import jenkins.plugins.git.traits.RemoteNameSCMSourceTrait;
-import jenkins.scm.api.SCMFile;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadCategory;
 import jenkins.scm.api.SCMHeadEvent;
 import jenkins.scm.api.SCMHeadObserver;
-import jenkins.scm.api.SCMProbe;
-import jenkins.scm.api.SCMProbeStat;
 import jenkins.scm.api.SCMRevision;
 import jenkins.scm.api.SCMSource;
 import jenkins.scm.api.SCMSourceCriteria;
@@ -100,18 +96,17 @@ import jenkins.scm.impl.trait.WildcardSCMHeadFilterTrait;
 import jenkins.scm.impl.trait.WildcardSCMSourceFilterTrait;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.lib.Constants;
-import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.URIish;
-import org.eclipse.jgit.treewalk.TreeWalk;
 import org.jenkinsci.plugins.gitclient.FetchCommand;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
@@ -155,9 +150,21 @@ public abstract class AbstractGitSCMSource extends SCMSource {
             "+refs/heads/*:refs/remotes/" + REF_SPEC_REMOTE_NAME_PLACEHOLDER_STR + "/*";
 
     /**
-     * Keep one lock per cache directory. Lazy populated, but never purge, except on restart.
+     * The number of threads evaluating the criteria of branches concurrently during indexing. With {@code 1} the
+     * criteria of each branch are only evaluated when the branch is processed.
      */
-    private static final ConcurrentMap<String, Lock> cacheLocks = new ConcurrentHashMap<>();
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the parallelism")
+    public static int PROBE_THREADS = Integer.getInteger(AbstractGitSCMSource.class.getName() + ".probeThreads", 1);
+
+    /**
+     * Whether indexing reuses what the previous indexing of the source learned about branches which did not move.
+     * Set to {@code false} to index all branches from the repository again, which also replaces the stored snapshot.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can force a full rescan")
+    public static boolean INCREMENTAL_INDEXING =
+            !"false".equals(System.getProperty(AbstractGitSCMSource.class.getName() + ".incrementalIndexing"));
 
     private static final Logger LOGGER = Logger.getLogger(AbstractGitSCMSource.class.getName());
 
@@ -307,6 +314,19 @@ public abstract class AbstractGitSCMSource extends SCMSource {
         T run(GitClient client, String remoteName) throws IOException, InterruptedException;
     }
 
+    /**
+     * A {@link Retriever} which only needs some refs of the remote.
+     */
+    private interface TargetedRetriever<T> extends Retriever<T> {
+        /**
+         * Returns the refspecs to fetch before {@link #run(GitClient, String)}.
+         *
+         * @return the refspecs, or an empty list if the cache repository already has everything needed.
+         */
+        @NonNull
+        List<RefSpec> refSpecs(GitClient client, String remoteName) throws IOException, InterruptedException;
+    }
+
     @NonNull
     private <T, C extends GitSCMSourceContext<C, R>, R extends GitSCMSourceRequest> T doRetrieve(Retriever<T> retriever,
                                                                                                  @NonNull C context,
@@ -314,8 +334,8 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                                                                                                  boolean prune)
             throws IOException, InterruptedException {
         String cacheEntry = getCacheEntry();
-        Lock cacheLock = getCacheLock(cacheEntry);
-        cacheLock.lock();
+        long requested = FetchCoalescer.now();
+        CacheLocks.Handle cacheLock = CacheLocks.write(cacheEntry);
         try {
             File cacheDir = getCacheDir(cacheEntry);
             Git git = Git.with(listener, new EnvVars(EnvVars.masterEnvVars)).in(cacheDir);
@@ -328,25 +348,39 @@ public abstract class AbstractGitSCMSource extends SCMSource {
             if (!client.hasGitRepo()) {
                 listener.getLogger().println("Creating git repository in " + cacheDir);
                 client.init();
+                FetchCoalescer.invalidate(cacheEntry);
             }
             String remoteName = context.remoteName();
             listener.getLogger().println("Setting " + remoteName + " to " + getRemote());
             client.setRemoteUrl(remoteName, getRemote());
-            listener.getLogger().println((prune ? "Fetching & pruning " : "Fetching ") + remoteName + "...");
-            FetchCommand fetch = client.fetch_();
-            if (prune) {
-                fetch = fetch.prune();
-            }
-            URIish remoteURI = null;
-            try {
-                remoteURI = new URIish(remoteName);
-            } catch (URISyntaxException ex) {
-                listener.getLogger().println("URI syntax exception for '" + remoteName + "' " + ex);
+            List<RefSpec> refSpecs = retriever instanceof TargetedRetriever
+                    ? ((TargetedRetriever<T>) retriever).refSpecs(client, remoteName)
+                    : context.asRefSpecs();
+            if (refSpecs.isEmpty()) {
+                listener.getLogger().println("Not fetching " + remoteName + ", the cache is up to date");
+            } else if (FetchCoalescer.isFresh(cacheEntry, requested, refSpecs, prune)) {
+                listener.getLogger().println("Reusing the concurrent fetch of " + remoteName);
+            } else {
+                listener.getLogger().println((prune ? "Fetching & pruning " : "Fetching ") + remoteName + "...");
+                FetchCommand fetch = client.fetch_();
+                if (prune) {
+                    fetch = fetch.prune();
+                }
+                URIish remoteURI = null;
+                try {
+                    remoteURI = new URIish(remoteName);
+                } catch (URISyntaxException ex) {
+                    listener.getLogger().println("URI syntax exception for '" + remoteName + "' " + ex);
+                }
+                long started = FetchCoalescer.now();
+                fetch.from(remoteURI, refSpecs).execute();
+                FetchCoalescer.fetched(cacheEntry, started, refSpecs, prune);
             }
-            fetch.from(remoteURI, context.asRefSpecs()).execute();
+            // the retriever only reads the repository, file system reads may proceed alongside it
+            cacheLock.downgrade();
             return retriever.run(client, remoteName);
         } finally {
-            cacheLock.unlock();
+            cacheLock.close();
         }
     }
 
@@ -358,9 +392,50 @@ public abstract class AbstractGitSCMSource extends SCMSource {
     protected SCMRevision retrieve(@NonNull final SCMHead head, @NonNull TaskListener listener)
             throws IOException, InterruptedException {
         final GitSCMSourceContext context = new GitSCMSourceContext<>(null, SCMHeadObserver.none()).withTraits(getTraits());
-        return doRetrieve(new Retriever<SCMRevision>() {
+        final String refName = (head instanceof GitTagSCMHead ? Constants.R_TAGS : Constants.R_HEADS) + head.getName();
+        return doRetrieve(new TargetedRetriever<SCMRevision>() {
+                              /**
+                               * Whether the head is resolved from a query of its ref only.
+                               */
+                              private boolean targeted;
+                              /**
+                               * The advertised object of the head.
+                               */
+                              private ObjectId advertised;
+
+                              @NonNull
+                              @Override
+                              public List<RefSpec> refSpecs(GitClient client, String remoteName)
+                                      throws IOException, InterruptedException {
+                                  List<RefSpec> refSpecs = context.asRefSpecs();
+                                  if (!matches(refSpecs, refName)) {
+                                      return refSpecs;
+                                  }
+                                  targeted = true;
+                                  advertised = client.getRemoteReferences(getRemote(), refName, false, false)
+                                          .get(refName);
+                                  if (advertised == null || hasObject(client, advertised)) {
+                                      return Collections.emptyList();
+                                  }
+                                  return Collections.singletonList(new RefSpec("+" + refName + ":"
+                                          + (head instanceof GitTagSCMHead ? refName
+                                          : Constants.R_REMOTES + remoteName + "/" + head.getName())));
+                              }
+
                               @Override
                               public SCMRevision run(GitClient client, String remoteName) throws IOException, InterruptedException {
+                                  if (targeted) {
+                                      if (advertised == null) {
+                                          return null;
+                                      }
+                                      if (head instanceof GitTagSCMHead) {
+                                          try (RevWalk walk = new RevWalk(client.getRepository())) {
+                                              return new GitTagSCMRevision((GitTagSCMHead) head,
+                                                      walk.parseCommit(advertised).name());
+                                          }
+                                      }
+                                      return new SCMRevisionImpl(head, advertised.name());
+                                  }
                                   if (head instanceof GitTagSCMHead) {
                                       try {
                                           ObjectId objectId = client.revParse(Constants.R_TAGS + head.getName());
@@ -390,8 +465,8 @@ public abstract class AbstractGitSCMSource extends SCMSource {
     @Override
     @SuppressFBWarnings(value="SE_BAD_FIELD", justification="Known non-serializable this")
     protected void retrieve(@CheckForNull SCMSourceCriteria criteria,
-                            @NonNull SCMHeadObserver observer,
-                            @CheckForNull SCMHeadEvent<?> event,
+                            @NonNull final SCMHeadObserver observer,
+                            @CheckForNull final SCMHeadEvent<?> event,
                             @NonNull final TaskListener listener)
             throws IOException, InterruptedException {
         final GitSCMSourceContext context =
@@ -400,31 +475,69 @@ public abstract class AbstractGitSCMSource extends SCMSource {
             @Override
             public Void run(GitClient client, String remoteName) throws IOException, InterruptedException {
                 final Repository repository = client.getRepository();
+                RemoteAdvertisement advertisement = RemoteAdvertisement.of(getRemote(), getCredentialsId(), event);
                 try (RevWalk walk = new RevWalk(repository);
                      GitSCMSourceRequest request = context.newRequest(AbstractGitSCMSource.this, listener)) {
                     Map<String, ObjectId> remoteReferences = null;
                     if (context.wantBranches() || context.wantTags()) {
                         listener.getLogger().println("Listing remote references...");
-                        remoteReferences = client.getRemoteReferences(
-                                client.getRemoteUrl(remoteName), null, context.wantBranches(), context.wantTags()
-                        );
+                        remoteReferences =
+                                advertisement.getReferences(client, context.wantBranches(), context.wantTags());
                     }
                     if (context.wantBranches()) {
-                        discoverBranches(repository, walk, request, remoteReferences);
+                        IndexSnapshot previous = INCREMENTAL_INDEXING ? IndexSnapshot.load(getOwner(), getId()) : null;
+                        IndexSnapshot next = IndexSnapshot.create();
+                        boolean completed = discoverBranches(repository, walk, request, remoteReferences, previous,
+                                next);
+                        if (completed || observer.getIncludes() != null) {
+                            // only some branches were processed, keep what the snapshot knows about the others
+                            next.keep(previous != null ? previous : IndexSnapshot.load(getOwner(), getId()));
+                        }
+                        next.save(getOwner(), getId());
                     }
                     if (context.wantTags()) {
                         discoverTags(repository, walk, request, remoteReferences);
                     }
+                } finally {
+                    advertisement.release();
                 }
                 return null;
             }
 
-            private void discoverBranches(final Repository repository,
+            /**
+             * @return {@code true} if the request completed before all branches were processed.
+             */
+            private boolean discoverBranches(final Repository repository,
                                           final RevWalk walk, GitSCMSourceRequest request,
-                                          Map<String, ObjectId> remoteReferences)
+                                          Map<String, ObjectId> remoteReferences,
+                                          @CheckForNull IndexSnapshot previous, @NonNull IndexSnapshot next)
                     throws IOException, InterruptedException {
                 listener.getLogger().println("Checking branches...");
                 walk.setRetainBody(false);
+                try (ProbePrefetcher prefetcher = PROBE_THREADS > 1 && !request.getCriteria().isEmpty()
+                        ? new ProbePrefetcher(repository, request.getCriteria(), PROBE_THREADS) : null) {
+                    if (prefetcher != null) {
+                        for (Map.Entry<String, ObjectId> ref : remoteReferences.entrySet()) {
+                            if (ref.getKey().startsWith(Constants.R_HEADS)) {
+                                String branchName = StringUtils.removeStart(ref.getKey(), Constants.R_HEADS);
+                                if ((previous == null || !previous.isUnchanged(branchName, ref.getValue()))
+                                        && !request.isExcluded(new SCMHead(branchName))) {
+                                    prefetcher.submit(branchName, ref.getValue());
+                                }
+                            }
+                        }
+                    }
+                    return processBranches(repository, walk, request, remoteReferences, prefetcher, previous, next);
+                }
+            }
+
+            private boolean processBranches(final Repository repository,
+                                         final RevWalk walk, GitSCMSourceRequest request,
+                                         Map<String, ObjectId> remoteReferences,
+                                         @CheckForNull final ProbePrefetcher prefetcher,
+                                         @CheckForNull final IndexSnapshot previous,
+                                         @NonNull final IndexSnapshot next)
+                    throws IOException, InterruptedException {
                 int count = 0;
                 for (final Map.Entry<String, ObjectId> ref : remoteReferences.entrySet()) {
                     if (!ref.getKey().startsWith(Constants.R_HEADS)) {
@@ -447,56 +560,18 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                                 public SCMSourceCriteria.Probe create(@NonNull SCMHead head,
                                                                       @Nullable ObjectId revisionInfo)
                                         throws IOException, InterruptedException {
-                                    RevCommit commit = walk.parseCommit(revisionInfo);
-                                    final long lastModified = TimeUnit.SECONDS.toMillis(commit.getCommitTime());
-                                    final RevTree tree = commit.getTree();
-                                    return new SCMProbe() {
-                                        @Override
-                                        public void close() throws IOException {
-                                            // no-op
-                                        }
-
-                                        @Override
-                                        public String name() {
-                                            return branchName;
-                                        }
-
-                                        @Override
-                                        public long lastModified() {
-                                            return lastModified;
-                                        }
-
-                                        @Override
-                                        @NonNull
-                                        @SuppressFBWarnings(value = "NP_LOAD_OF_KNOWN_NULL_VALUE",
-                                                            justification =
-                                                                    "TreeWalk.forPath can return null, compiler "
-                                                                            + "generated code for try with resources handles it")
-                                        public SCMProbeStat stat(@NonNull String path) throws IOException {
-                                            try (TreeWalk tw = TreeWalk.forPath(repository, path, tree)) {
-                                                if (tw == null) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.NONEXISTENT);
-                                                }
-                                                FileMode fileMode = tw.getFileMode(0);
-                                                if (fileMode == FileMode.MISSING) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.NONEXISTENT);
-                                                }
-                                                if (fileMode == FileMode.EXECUTABLE_FILE) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.REGULAR_FILE);
-                                                }
-                                                if (fileMode == FileMode.REGULAR_FILE) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.REGULAR_FILE);
-                                                }
-                                                if (fileMode == FileMode.SYMLINK) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.LINK);
-                                                }
-                                                if (fileMode == FileMode.TREE) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.DIRECTORY);
-                                                }
-                                                return SCMProbeStat.fromType(SCMFile.Type.OTHER);
-                                            }
-                                        }
-                                    };
+                                    TreeProbe probe = previous == null ? null
+                                            : previous.probe(repository, branchName, revisionInfo);
+                                    if (probe == null && prefetcher != null) {
+                                        probe = prefetcher.take(branchName);
+                                    }
+                                    if (probe == null) {
+                                        RevCommit commit = walk.parseCommit(revisionInfo);
+                                        probe = new TreeProbe(repository, branchName,
+                                                TimeUnit.SECONDS.toMillis(commit.getCommitTime()), commit.getTree());
+                                    }
+                                    next.record(branchName, revisionInfo, probe);
+                                    return probe;
                                 }
                             }, new SCMSourceRequest.LazyRevisionLambda<SCMHead, SCMRevision, ObjectId>() {
                                 @NonNull
@@ -517,10 +592,11 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                             }
                     )) {
                         listener.getLogger().format("Processed %d branches (query complete)%n", count);
-                        return;
+                        return true;
                     }
                 }
                 listener.getLogger().format("Processed %d branches%n", count);
+                return false;
             }
 
             private void discoverTags(final Repository repository,
@@ -529,6 +605,7 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                     throws IOException, InterruptedException {
                 listener.getLogger().println("Checking tags...");
                 walk.setRetainBody(false);
+                Map<String, Ref> localTags = repository.getRefDatabase().getRefs(Constants.R_TAGS);
                 int count = 0;
                 for (final Map.Entry<String, ObjectId> ref : remoteReferences.entrySet()) {
                     if (!ref.getKey().startsWith(Constants.R_TAGS)) {
@@ -536,9 +613,14 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                     }
                     count++;
                     final String tagName = StringUtils.removeStart(ref.getKey(), Constants.R_TAGS);
-                    RevCommit commit = walk.parseCommit(ref.getValue());
-                    final long lastModified = TimeUnit.SECONDS.toMillis(commit.getCommitTime());
-                    if (request.process(new GitTagSCMHead(tagName, lastModified),
+                    // only parse the commit of tags which pass the prefilters, or of those which need the timestamp
+                    // to be filtered
+                    LazyTagSCMHead lazyHead = new LazyTagSCMHead(tagName, repository, walk,
+                            localTags.get(tagName), ref.getValue());
+                    if (request.isExcluded(lazyHead)) {
+                        continue;
+                    }
+                    if (request.process(new GitTagSCMHead(tagName, lazyHead.timestamp()),
                             new SCMSourceRequest.IntermediateLambda<ObjectId>() {
                                 @Nullable
                                 @Override
@@ -554,55 +636,7 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                                                                       @Nullable ObjectId revisionInfo)
                                         throws IOException, InterruptedException {
                                     RevCommit commit = walk.parseCommit(revisionInfo);
-                                    final long lastModified = TimeUnit.SECONDS.toMillis(commit.getCommitTime());
-                                    final RevTree tree = commit.getTree();
-                                    return new SCMProbe() {
-                                        @Override
-                                        public void close() throws IOException {
-                                            // no-op
-                                        }
-
-                                        @Override
-                                        public String name() {
-                                            return tagName;
-                                        }
-
-                                        @Override
-                                        public long lastModified() {
-                                            return lastModified;
-                                        }
-
-                                        @Override
-                                        @NonNull
-                                        @SuppressFBWarnings(value = "NP_LOAD_OF_KNOWN_NULL_VALUE",
-                                                            justification =
-                                                                    "TreeWalk.forPath can return null, compiler "
-                                                                            + "generated code for try with resources handles it")
-                                        public SCMProbeStat stat(@NonNull String path) throws IOException {
-                                            try (TreeWalk tw = TreeWalk.forPath(repository, path, tree)) {
-                                                if (tw == null) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.NONEXISTENT);
-                                                }
-                                                FileMode fileMode = tw.getFileMode(0);
-                                                if (fileMode == FileMode.MISSING) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.NONEXISTENT);
-                                                }
-                                                if (fileMode == FileMode.EXECUTABLE_FILE) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.REGULAR_FILE);
-                                                }
-                                                if (fileMode == FileMode.REGULAR_FILE) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.REGULAR_FILE);
-                                                }
-                                                if (fileMode == FileMode.SYMLINK) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.LINK);
-                                                }
-                                                if (fileMode == FileMode.TREE) {
-                                                    return SCMProbeStat.fromType(SCMFile.Type.DIRECTORY);
-                                                }
-                                                return SCMProbeStat.fromType(SCMFile.Type.OTHER);
-                                            }
-                                        }
-                                    };
+                                    return new TreeProbe(repository, tagName, head.getTimestamp(), commit.getTree());
                                 }
                             }, new SCMSourceRequest.LazyRevisionLambda<GitTagSCMHead, GitTagSCMRevision, ObjectId>() {
                                 @NonNull
@@ -694,17 +728,52 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                 listener, false);
     }
 
+    /**
+     * Checks whether a cache repository has an object.
+     *
+     * @param client the client of the cache repository.
+     * @param id     the object.
+     * @return {@code true} if the object does not need to be fetched.
+     * @throws InterruptedException when interrupted
+     */
+    static boolean hasObject(@NonNull GitClient client, @NonNull final ObjectId id) throws InterruptedException {
+        try {
+            return client.withRepository(new RepositoryCallback<Boolean>() {
+                @Override
+                public Boolean invoke(Repository repository, VirtualChannel channel) {
+                    return repository.hasObject(id);
+                }
+            });
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a remote ref is fetched by one of the refspecs.
+     */
+    static boolean matches(List<RefSpec> refSpecs, String ref) {
+        for (RefSpec refSpec : refSpecs) {
+            if (refSpec.matchSource(ref)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
     @NonNull
     @Override
-    protected List<Action> retrieveActions(@CheckForNull SCMSourceEvent event, @NonNull TaskListener listener)
+    protected List<Action> retrieveActions(@CheckForNull final SCMSourceEvent event, @NonNull TaskListener listener)
             throws IOException, InterruptedException {
         return doRetrieve(new Retriever<List<Action>>() {
                               @Override
                               public List<Action> run(GitClient client, String remoteName) throws IOException, InterruptedException {
-                                  Map<String, String> symrefs = client.getRemoteSymbolicReferences(getRemote(), null);
+                                  RemoteAdvertisement advertisement =
+                                          RemoteAdvertisement.of(getRemote(), getCredentialsId(), event);
+                                  Map<String, String> symrefs = advertisement.getSymbolicReferences(client);
                                   if (symrefs.containsKey(Constants.HEAD)) {
                                       // Hurrah! The Server is Git 1.8.5 or newer and our client has symref reporting
                                       String target = symrefs.get(Constants.HEAD);
@@ -724,7 +793,7 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                                   // the remote server is Git 1.8.4 or earlier, or that the local CLI git implementation is
                                   // older than git 2.8.0 (CentOS 6, CentOS 7, Debian 7, Debian 8, Ubuntu 14, and
                                   // Ubuntu 16)
-                                  Map<String, ObjectId> remoteReferences = client.getRemoteReferences(getRemote(), null, false, false);
+                                  Map<String, ObjectId> remoteReferences = advertisement.getReferences(client, false, false);
                                   if (remoteReferences.containsKey(Constants.HEAD)) {
                                       ObjectId head = remoteReferences.get(Constants.HEAD);
                                       Set<String> names = new TreeSet<>();
@@ -810,15 +879,18 @@ public abstract class AbstractGitSCMSource extends SCMSource {
                 LOGGER.log(Level.WARNING, "Failed mkdirs of {0}", cacheDir);
             }
         }
+        GitCacheManager.accessed(cacheEntry, cacheDir);
         return cacheDir;
     }
 
+    /**
+     * Returns the exclusive lock of a cache directory.
+     *
+     * @param cacheEntry the cache entry.
+     * @return the exclusive lock, operations which only read the cache should use {@link CacheLocks#read(String)}.
+     */
     protected static Lock getCacheLock(String cacheEntry) {
-        Lock cacheLock;
-        while (null == (cacheLock = cacheLocks.get(cacheEntry))) {
-            cacheLocks.putIfAbsent(cacheEntry, new ReentrantLock());
-        }
-        return cacheLock;
+        return CacheLocks.exclusiveLock(cacheEntry);
     }
 
     @CheckForNull
@@ -954,8 +1026,17 @@ public abstract class AbstractGitSCMSource extends SCMSource {
       return quotedBranches.toString();
     }
 
+    /**
+     * Returns the cache entry of a remote. Remote URLs which only differ cosmetically (case of the scheme or host,
+     * explicit default port, trailing slash or {@code .git}) share a cache entry.
+     *
+     * @param remote the remote URL.
+     * @return the cache entry.
+     */
     /*package*/ static String getCacheEntry(String remote) {
-        return "git-" + Util.getDigestOf(remote);
+        String cacheEntry = "git-" + Util.getDigestOf(RemoteHeadsCache.normalizeUrl(remote));
+        GitCacheManager.remote(cacheEntry, "git-" + Util.getDigestOf(remote), remote);
+        return cacheEntry;
     }
 
     /**
@@ -1013,6 +1094,61 @@ public abstract class AbstractGitSCMSource extends SCMSource {
 
     }
 
+    /**
+     * A tag head which only parses the commit of the tag when a prefilter asks for its timestamp. The commit is
+     * looked up through the peeled ref of the cache repository where possible, which for packed refs spares reading
+     * the tag object of annotated tags.
+     */
+    private static class LazyTagSCMHead extends GitTagSCMHead {
+        private static final long serialVersionUID = 1L;
+        private final transient Repository repository;
+        private final transient RevWalk walk;
+        private final transient Ref local;
+        private final transient ObjectId id;
+        private transient long timestamp = -1L;
+
+        LazyTagSCMHead(@NonNull String name, @NonNull Repository repository, @NonNull RevWalk walk,
+                       @CheckForNull Ref local, @NonNull ObjectId id) {
+            super(name, 0L);
+            this.repository = repository;
+            this.walk = walk;
+            this.local = local;
+            this.id = id;
+        }
+
+        /**
+         * Returns the commit time of the tag.
+         *
+         * @return the commit time in milliseconds.
+         * @throws IOException if the commit could not be read.
+         */
+        long timestamp() throws IOException {
+            if (timestamp < 0L) {
+                ObjectId commit = id;
+                if (local != null && id.equals(local.getObjectId())) {
+                    Ref peeled = local.isPeeled() ? local : repository.getRefDatabase().peel(local);
+                    if (peeled.getPeeledObjectId() != null) {
+                        commit = peeled.getPeeledObjectId();
+                    }
+                }
+                timestamp = TimeUnit.SECONDS.toMillis(walk.parseCommit(commit).getCommitTime());
+            }
+            return timestamp;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getTimestamp() {
+            try {
+                return timestamp();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read tag " + getName(), e);
+            }
+        }
+    }
+
     public static class SpecificRevisionBuildChooser extends BuildChooser {
 
         private final Revision revision;
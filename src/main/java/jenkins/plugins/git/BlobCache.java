@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The contents of small blobs read through {@link GitSCMFile}, shared by all file systems. As a blob id determines
+ * its content, the many lightweight checkouts loading the same {@code Jenkinsfile} or library scripts read them from
+ * the cache repository once.
+ *
+ * <p>
+ * Blobs of at most {@link #MAX_BLOB_BYTES} are kept, least recently used first out, up to {@link #MAX_BYTES} in total.
+ * The returned arrays are shared and must not be modified.
+ */
+@Restricted(NoExternalUse.class)
+public final class BlobCache {
+
+    /**
+     * The total size of the kept contents.
+     */
+    private static final long MAX_BYTES = Long.getLong(BlobCache.class.getName() + ".maxBytes", 16L * 1024 * 1024);
+
+    /**
+     * The size of the largest kept content.
+     */
+    private static final int MAX_BLOB_BYTES = Integer.getInteger(BlobCache.class.getName() + ".maxBlobBytes", 256 * 1024);
+
+    /**
+     * Accounted for each entry on top of its content.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * Contents by blob id.
+     */
+    private static final Cache<ObjectId, byte[]> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_BYTES)
+            .weigher(new Weigher<ObjectId, byte[]>() {
+                @Override
+                public int weigh(ObjectId key, byte[] value) {
+                    return ENTRY_OVERHEAD + value.length;
+                }
+            })
+            .build();
+
+    private static final AtomicLong HITS = new AtomicLong();
+
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private BlobCache() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Returns the kept content of a blob.
+     *
+     * @param id the blob id.
+     * @return the content, which must not be modified, or {@code null} if it is not kept.
+     */
+    @CheckForNull
+    public static byte[] get(@NonNull AnyObjectId id) {
+        byte[] content = CACHE.getIfPresent(id.toObjectId());
+        if (content == null) {
+            MISSES.incrementAndGet();
+        } else {
+            HITS.incrementAndGet();
+        }
+        return content;
+    }
+
+    /**
+     * Keeps the content of a blob, if it is small enough.
+     *
+     * @param id      the blob id.
+     * @param content the content, which must not be modified afterwards.
+     */
+    public static void put(@NonNull AnyObjectId id, @NonNull byte[] content) {
+        if (content.length <= MAX_BLOB_BYTES) {
+            CACHE.put(id.toObjectId(), content);
+        }
+    }
+
+    /**
+     * Discards all kept contents.
+     */
+    public static void clear() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Returns the number of lookups which found the content.
+     *
+     * @return the number of hits since startup.
+     */
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    /**
+     * Returns the number of lookups which had to read the cache repository.
+     *
+     * @return the number of misses since startup.
+     */
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    /**
+     * Returns the share of lookups which found the content.
+     *
+     * @return the hit rate between {@code 0} and {@code 1}, {@code 0} before the first lookup.
+     */
+    public static double getHitRate() {
+        long hits = HITS.get();
+        long lookups = hits + MISSES.get();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the number of kept contents.
+     *
+     * @return the number of blobs.
+     */
+    public static long getSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * Returns the total size of the kept contents.
+     *
+     * @return the size in bytes.
+     */
+    public static long getBytes() {
+        long bytes = 0L;
+        for (byte[] content : CACHE.asMap().values()) {
+            bytes += content.length;
+        }
+        return bytes;
+    }
+}
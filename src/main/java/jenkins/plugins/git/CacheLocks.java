@@ -0,0 +1,315 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Read/write locks on the cache repositories of {@link AbstractGitSCMSource}. Operations which change the
+ * repository (fetch, prune) hold the write lock, operations which only read it (file system access, changelogs,
+ * probes) share the read lock.
+ *
+ * <p>
+ * A lock only exists while it is held or waited for, so unused cache entries do not keep a lock forever.
+ */
+@Restricted(NoExternalUse.class)
+public final class CacheLocks {
+
+    private static final Logger LOGGER = Logger.getLogger(CacheLocks.class.getName());
+
+    /**
+     * Waits longer than this many milliseconds are logged at {@link Level#FINE}, others at {@link Level#FINEST}.
+     */
+    private static final long SLOW_WAIT_MILLIS = 1000L;
+
+    /**
+     * Locks in use, guarded by itself.
+     */
+    private static final Map<String, Entry> ENTRIES = new HashMap<>();
+
+    private static final AtomicLong readWaitNanos = new AtomicLong();
+    private static final AtomicLong writeWaitNanos = new AtomicLong();
+
+    private CacheLocks() {
+    }
+
+    /**
+     * Acquires the shared lock of a cache entry.
+     *
+     * @param cacheEntry the cache entry.
+     * @return the held lock, to be closed to release it.
+     */
+    @NonNull
+    public static Handle read(@NonNull String cacheEntry) {
+        Entry entry = acquire(cacheEntry);
+        long start = System.nanoTime();
+        entry.lock.readLock().lock();
+        waited(cacheEntry, "read", start, readWaitNanos);
+        return new Handle(cacheEntry, entry, false);
+    }
+
+    /**
+     * Acquires the exclusive lock of a cache entry.
+     *
+     * @param cacheEntry the cache entry.
+     * @return the held lock, to be closed to release it.
+     */
+    @NonNull
+    public static Handle write(@NonNull String cacheEntry) {
+        Entry entry = acquire(cacheEntry);
+        long start = System.nanoTime();
+        entry.lock.writeLock().lock();
+        waited(cacheEntry, "write", start, writeWaitNanos);
+        return new Handle(cacheEntry, entry, true);
+    }
+
+    /**
+     * Acquires the exclusive lock of a cache entry if nobody holds or waits for its lock.
+     *
+     * @param cacheEntry the cache entry.
+     * @return the held lock, to be closed to release it, or {@code null} if the cache entry is in use.
+     */
+    @CheckForNull
+    public static Handle tryWrite(@NonNull String cacheEntry) {
+        synchronized (ENTRIES) {
+            if (ENTRIES.containsKey(cacheEntry)) {
+                return null;
+            }
+        }
+        Entry entry = acquire(cacheEntry);
+        if (entry.lock.writeLock().tryLock()) {
+            return new Handle(cacheEntry, entry, true);
+        }
+        release(cacheEntry, entry);
+        return null;
+    }
+
+    /**
+     * Returns the total time spent waiting for read locks.
+     *
+     * @return the total wait in milliseconds.
+     */
+    public static long getReadWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readWaitNanos.get());
+    }
+
+    /**
+     * Returns the total time spent waiting for write locks.
+     *
+     * @return the total wait in milliseconds.
+     */
+    public static long getWriteWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeWaitNanos.get());
+    }
+
+    /**
+     * Returns the number of cache entries whose lock is currently held or waited for.
+     *
+     * @return the number of locks in use.
+     */
+    public static int size() {
+        synchronized (ENTRIES) {
+            return ENTRIES.size();
+        }
+    }
+
+    /**
+     * Returns a {@link Lock} on the exclusive lock of a cache entry, for {@link AbstractGitSCMSource#getCacheLock(String)}.
+     *
+     * @param cacheEntry the cache entry.
+     * @return the lock.
+     */
+    @NonNull
+    static Lock exclusiveLock(@NonNull String cacheEntry) {
+        return new ExclusiveLock(cacheEntry);
+    }
+
+    private static Entry acquire(String cacheEntry) {
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(cacheEntry);
+            if (entry == null) {
+                entry = new Entry();
+                ENTRIES.put(cacheEntry, entry);
+            }
+            entry.users++;
+            return entry;
+        }
+    }
+
+    private static void release(String cacheEntry, Entry entry) {
+        synchronized (ENTRIES) {
+            if (--entry.users == 0) {
+                ENTRIES.remove(cacheEntry);
+            }
+        }
+    }
+
+    private static void waited(String cacheEntry, String mode, long start, AtomicLong total) {
+        long nanos = System.nanoTime() - start;
+        total.addAndGet(nanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        LOGGER.log(millis > SLOW_WAIT_MILLIS ? Level.FINE : Level.FINEST, "Waited {0}ms for the {1} lock of {2}",
+                new Object[]{millis, mode, cacheEntry});
+    }
+
+    private static class Entry {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        /**
+         * Number of holders and waiters, guarded by {@link #ENTRIES}.
+         */
+        private int users;
+    }
+
+    /**
+     * A held lock of a cache entry.
+     */
+    public static final class Handle implements AutoCloseable {
+        private final String cacheEntry;
+        private final Entry entry;
+        private boolean write;
+        private boolean closed;
+
+        private Handle(String cacheEntry, Entry entry, boolean write) {
+            this.cacheEntry = cacheEntry;
+            this.entry = entry;
+            this.write = write;
+        }
+
+        /**
+         * Turns a held write lock into a read lock, letting readers in without letting writers in first.
+         */
+        public void downgrade() {
+            if (write && !closed) {
+                entry.lock.readLock().lock();
+                entry.lock.writeLock().unlock();
+                write = false;
+            }
+        }
+
+        /**
+         * Releases the lock.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (write) {
+                entry.lock.writeLock().unlock();
+            } else {
+                entry.lock.readLock().unlock();
+            }
+            release(cacheEntry, entry);
+        }
+    }
+
+    /**
+     * The exclusive lock of a cache entry as a {@link Lock}.
+     */
+    private static class ExclusiveLock implements Lock {
+        private final String cacheEntry;
+
+        ExclusiveLock(String cacheEntry) {
+            this.cacheEntry = cacheEntry;
+        }
+
+        @Override
+        public void lock() {
+            Entry entry = acquire(cacheEntry);
+            long start = System.nanoTime();
+            entry.lock.writeLock().lock();
+            waited(cacheEntry, "write", start, writeWaitNanos);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            Entry entry = acquire(cacheEntry);
+            long start = System.nanoTime();
+            try {
+                entry.lock.writeLock().lockInterruptibly();
+            } catch (InterruptedException e) {
+                release(cacheEntry, entry);
+                throw e;
+            }
+            waited(cacheEntry, "write", start, writeWaitNanos);
+        }
+
+        @Override
+        public boolean tryLock() {
+            Entry entry = acquire(cacheEntry);
+            if (entry.lock.writeLock().tryLock()) {
+                return true;
+            }
+            release(cacheEntry, entry);
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, @NonNull TimeUnit unit) throws InterruptedException {
+            Entry entry = acquire(cacheEntry);
+            boolean locked = false;
+            try {
+                locked = entry.lock.writeLock().tryLock(time, unit);
+                return locked;
+            } finally {
+                if (!locked) {
+                    release(cacheEntry, entry);
+                }
+            }
+        }
+
+        @Override
+        public void unlock() {
+            Entry entry;
+            synchronized (ENTRIES) {
+                entry = ENTRIES.get(cacheEntry);
+            }
+            if (entry == null) {
+                throw new IllegalMonitorStateException("Lock of " + cacheEntry + " is not held");
+            }
+            entry.lock.writeLock().unlock();
+            release(cacheEntry, entry);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
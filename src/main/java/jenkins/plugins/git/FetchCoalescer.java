@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.transport.RefSpec;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Remembers the last fetch into each cache repository of {@link AbstractGitSCMSource}, so that callers which queued
+ * on the {@link CacheLocks#write(String) write lock} behind a fetch can reuse it instead of fetching again.
+ *
+ * <p>
+ * A fetch can be reused by a request when it fetched a superset of the requested refspecs (pruning, if the request
+ * prunes) and it started after the request was made, so nothing the requester could expect to see was missed.
+ * With {@link #FRESHNESS} set, fetches which started that many milliseconds before the request are reused too.
+ *
+ * <p>
+ * Callers hold the write lock of the cache entry around {@link #isFresh} and {@link #fetched}.
+ */
+@Restricted(NoExternalUse.class)
+public final class FetchCoalescer {
+
+    /**
+     * How long (in milliseconds) before a request a fetch may have started and still be reused by it. Defaults to
+     * {@code 0}: only fetches which started while the request was waiting for the cache lock are reused.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the freshness window")
+    public static long FRESHNESS = Long.getLong(FetchCoalescer.class.getName() + ".freshness", 0L);
+
+    /**
+     * How long a fetch is remembered at least. Forgetting a fetch only costs a fetch, so this only bounds the size
+     * of {@link #FETCHES}.
+     */
+    private static final long RETENTION_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    /**
+     * The last successful fetch of each cache entry.
+     */
+    private static final ConcurrentMap<String, Fetch> FETCHES = new ConcurrentHashMap<>();
+
+    private static final AtomicLong COALESCED = new AtomicLong();
+
+    private FetchCoalescer() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Returns the time of a request, to be taken before waiting for the cache lock.
+     *
+     * @return the current {@link System#nanoTime()}.
+     */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Checks whether the last fetch into a cache entry can be reused by a request.
+     *
+     * @param cacheEntry the cache entry.
+     * @param requested  the {@link #now()} of the request.
+     * @param refSpecs   the refspecs the request would fetch.
+     * @param prune      whether the request would prune.
+     * @return {@code true} if the request does not need to fetch.
+     */
+    public static boolean isFresh(@NonNull String cacheEntry, long requested, @NonNull Collection<RefSpec> refSpecs,
+                                  boolean prune) {
+        Fetch fetch = FETCHES.get(cacheEntry);
+        if (fetch == null
+                || fetch.started - (requested - TimeUnit.MILLISECONDS.toNanos(FRESHNESS)) < 0
+                || prune && !fetch.prune) {
+            return false;
+        }
+        for (RefSpec refSpec : refSpecs) {
+            if (!fetch.covers(refSpec)) {
+                return false;
+            }
+        }
+        COALESCED.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records a successful fetch into a cache entry.
+     *
+     * @param cacheEntry the cache entry.
+     * @param started    the {@link #now()} before the fetch started.
+     * @param refSpecs   the fetched refspecs.
+     * @param prune      whether the fetch pruned.
+     */
+    public static void fetched(@NonNull String cacheEntry, long started, @NonNull Collection<RefSpec> refSpecs,
+                               boolean prune) {
+        long oldest = now() - Math.max(RETENTION_NANOS, TimeUnit.MILLISECONDS.toNanos(FRESHNESS));
+        for (Iterator<Fetch> it = FETCHES.values().iterator(); it.hasNext(); ) {
+            if (it.next().started - oldest < 0) {
+                it.remove();
+            }
+        }
+        FETCHES.put(cacheEntry, new Fetch(started, refSpecs, prune));
+    }
+
+    /**
+     * Forgets the last fetch into a cache entry, e.g. because the repository was created again.
+     *
+     * @param cacheEntry the cache entry.
+     */
+    public static void invalidate(@NonNull String cacheEntry) {
+        FETCHES.remove(cacheEntry);
+    }
+
+    /**
+     * Returns the number of fetches which were skipped because an earlier fetch was reused.
+     *
+     * @return the number of coalesced fetches.
+     */
+    public static long getCoalescedCount() {
+        return COALESCED.get();
+    }
+
+    private static class Fetch {
+        private final long started;
+        private final List<RefSpec> refSpecs;
+        private final boolean prune;
+
+        Fetch(long started, Collection<RefSpec> refSpecs, boolean prune) {
+            this.started = started;
+            this.refSpecs = new ArrayList<>(refSpecs);
+            this.prune = prune;
+        }
+
+        /**
+         * Checks whether one of the fetched refspecs updated everything a refspec would.
+         */
+        boolean covers(RefSpec requested) {
+            for (RefSpec fetched : refSpecs) {
+                if (fetched.equals(requested)) {
+                    return true;
+                }
+                if (fetched.isWildcard() && !requested.isWildcard()
+                        && (fetched.isForceUpdate() || !requested.isForceUpdate())
+                        && requested.getDestination() != null
+                        && fetched.matchSource(requested.getSource())
+                        && requested.getDestination().equals(
+                                fetched.expandFromSource(requested.getSource()).getDestination())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
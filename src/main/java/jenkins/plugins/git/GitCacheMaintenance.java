@@ -0,0 +1,443 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.ManagementLink;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitException;
+import hudson.plugins.git.GitTool;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.gitclient.JGitTool;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Repacks the cache repositories of {@link AbstractGitSCMSource}, which otherwise only ever receive fetches and
+ * pile up loose objects and packs.
+ *
+ * <p>
+ * Every cache repository is checked once per {@link #INTERVAL_HOURS} and repacked when it has as many loose objects
+ * or packs as {@code git gc --auto} tolerates. The repack runs {@code git gc} with reachability bitmaps and then
+ * {@code git commit-graph write} (when the git version supports it) with the default {@link GitTool}, in a separate
+ * process. When the default tool is JGit or command line git cannot be started, JGit repacks the repository inside
+ * the controller instead.
+ *
+ * <p>
+ * The repack holds the write lock of the cache ({@link CacheLocks}), so fetches, indexing and file system reads of
+ * that cache wait until it is done. It is abandoned after {@link #TIMEOUT_MINUTES}. A repository whose lock is held or
+ * waited for is retried with an exponential backoff. Each repack is reported with the pack and loose object counts
+ * and the time of a commit walk over all refs, before and after.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class GitCacheMaintenance extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(GitCacheMaintenance.class.getName());
+
+    /**
+     * How often (in hours) each cache repository is checked.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the interval")
+    public static long INTERVAL_HOURS = Long.getLong(GitCacheMaintenance.class.getName() + ".intervalHours", 24L);
+
+    /**
+     * How long (in minutes) a repack may hold the cache before it is abandoned.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the timeout")
+    public static long TIMEOUT_MINUTES = Long.getLong(GitCacheMaintenance.class.getName() + ".timeoutMinutes", 60L);
+
+    /**
+     * The {@code gc.auto} default of command line git.
+     */
+    private static final long LOOSE_OBJECTS_LIMIT = 6700L;
+
+    /**
+     * The {@code gc.autoPackLimit} default of command line git.
+     */
+    private static final long PACKS_LIMIT = 50L;
+
+    /**
+     * At most this many commits are walked to time the repository.
+     */
+    private static final int WALK_LIMIT = 100000;
+
+    private static final long RECURRENCE = 15 * MIN;
+
+    /**
+     * The schedule of each cache repository.
+     */
+    private static final ConcurrentMap<String, Schedule> SCHEDULES = new ConcurrentHashMap<>();
+
+    public GitCacheMaintenance() {
+        super("Git cache maintenance");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        GitCacheManager manager = ManagementLink.all().get(GitCacheManager.class);
+        if (manager == null) {
+            return;
+        }
+        for (GitCacheManager.Cache cache : manager.getCaches()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            maintain(cache, listener);
+        }
+    }
+
+    /**
+     * Checks a cache repository if it is due, repacking it if needed.
+     *
+     * @param cache    the cache repository.
+     * @param listener where to report the repack.
+     * @return the repack, or {@code null} if the repository was not due, busy or did not need a repack.
+     * @throws InterruptedException when interrupted
+     */
+    @CheckForNull
+    Report maintain(@NonNull GitCacheManager.Cache cache, @NonNull TaskListener listener) throws InterruptedException {
+        String cacheEntry = cache.getName();
+        Schedule schedule = SCHEDULES.get(cacheEntry);
+        if (schedule == null) {
+            Schedule newSchedule = new Schedule();
+            schedule = SCHEDULES.putIfAbsent(cacheEntry, newSchedule);
+            if (schedule == null) {
+                schedule = newSchedule;
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (now < schedule.due) {
+            return null;
+        }
+        long interval = TimeUnit.HOURS.toMillis(INTERVAL_HOURS);
+        CacheLocks.Handle lock = CacheLocks.tryWrite(cacheEntry);
+        if (lock == null) {
+            schedule.busy++;
+            schedule.due = now + Math.min(interval, RECURRENCE << Math.min(schedule.busy, 10));
+            LOGGER.log(Level.FINE, "Cache {0} is busy, retrying maintenance at {1,time}",
+                    new Object[]{cacheEntry, schedule.due});
+            return null;
+        }
+        try {
+            schedule.busy = 0;
+            schedule.due = now + interval;
+            File cacheDir = new File(GitCacheManager.getCachesDir(), cacheEntry);
+            Report report = repack(cacheDir, listener);
+            if (report != null) {
+                schedule.last = report;
+                listener.getLogger().println("Repacked cache " + cacheEntry + " of " + cache.getRemote() + ": " + report);
+            }
+            return report;
+        } catch (IOException | GitException e) {
+            listener.error("Could not repack cache " + cacheEntry + ": " + e);
+            return null;
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Returns the last repack of a cache repository since startup.
+     *
+     * @param cacheEntry the cache entry.
+     * @return the repack or {@code null}.
+     */
+    @CheckForNull
+    static Report getLastReport(@NonNull String cacheEntry) {
+        Schedule schedule = SCHEDULES.get(cacheEntry);
+        return schedule == null ? null : schedule.last;
+    }
+
+    /**
+     * Forgets the schedule of a deleted cache repository.
+     *
+     * @param cacheEntry the cache entry.
+     */
+    static void forget(@NonNull String cacheEntry) {
+        SCHEDULES.remove(cacheEntry);
+    }
+
+    private static class Schedule {
+        private volatile long due;
+        private volatile int busy;
+        private volatile Report last;
+    }
+
+    /**
+     * A repack of a cache repository.
+     */
+    public static final class Report implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final long packsBefore;
+        private final long packsAfter;
+        private final long looseObjectsBefore;
+        private final long looseObjectsAfter;
+        private final int commits;
+        private final long walkMillisBefore;
+        private final long walkMillisAfter;
+
+        Report(Properties before, Properties after, int commits, long walkMillisBefore, long walkMillisAfter) {
+            this.packsBefore = packs(before);
+            this.packsAfter = packs(after);
+            this.looseObjectsBefore = looseObjects(before);
+            this.looseObjectsAfter = looseObjects(after);
+            this.commits = commits;
+            this.walkMillisBefore = walkMillisBefore;
+            this.walkMillisAfter = walkMillisAfter;
+        }
+
+        public long getPacksBefore() {
+            return packsBefore;
+        }
+
+        public long getPacksAfter() {
+            return packsAfter;
+        }
+
+        public long getLooseObjectsBefore() {
+            return looseObjectsBefore;
+        }
+
+        public long getLooseObjectsAfter() {
+            return looseObjectsAfter;
+        }
+
+        public long getWalkMillisBefore() {
+            return walkMillisBefore;
+        }
+
+        public long getWalkMillisAfter() {
+            return walkMillisAfter;
+        }
+
+        @Override
+        public String toString() {
+            return "packs " + packsBefore + " -> " + packsAfter
+                    + ", loose objects " + looseObjectsBefore + " -> " + looseObjectsAfter
+                    + ", walk of " + commits + " commits " + walkMillisBefore + "ms -> " + walkMillisAfter + "ms";
+        }
+    }
+
+    private static long packs(Properties statistics) {
+        return Long.parseLong(statistics.getProperty("numberOfPackFiles", "0"));
+    }
+
+    private static long looseObjects(Properties statistics) {
+        return Long.parseLong(statistics.getProperty("numberOfLooseObjects", "0"));
+    }
+
+    /**
+     * Repacks a repository with too many loose objects or packs.
+     *
+     * @return the repack, or {@code null} if the repository did not need one.
+     */
+    @CheckForNull
+    private static Report repack(File cacheDir, TaskListener listener) throws IOException, InterruptedException {
+        EnvVars env = new EnvVars(EnvVars.masterEnvVars);
+        GitClient jgit = Git.with(listener, env).in(cacheDir).using(JGitTool.MAGIC_EXENAME).getClient();
+        Properties before = jgit.withRepository(new Statistics());
+        if (looseObjects(before) < LOOSE_OBJECTS_LIMIT && packs(before) < PACKS_LIMIT) {
+            return null;
+        }
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(TIMEOUT_MINUTES);
+        long start = System.nanoTime();
+        int commits = jgit.withRepository(new Walk());
+        long walkBefore = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        String gitExe = commandLineGit(cacheDir, env);
+        if (gitExe != null) {
+            if (run(cacheDir, env, listener, deadline, gitExe, "-c", "repack.writeBitmaps=true", "gc", "--quiet") != 0) {
+                throw new IOException("git gc failed");
+            }
+            if (run(cacheDir, env, listener, deadline, gitExe, "commit-graph", "write", "--reachable") != 0) {
+                LOGGER.log(Level.FINE, "Could not write the commit-graph of {0}, git is older than 2.18", cacheDir);
+            }
+        } else {
+            jgit.withRepository(new Repack(deadline));
+        }
+        Properties after = jgit.withRepository(new Statistics());
+        start = System.nanoTime();
+        jgit.withRepository(new Walk());
+        long walkAfter = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new Report(before, after, commits, walkBefore, walkAfter);
+    }
+
+    /**
+     * Returns the executable of the default {@link GitTool} if it is command line git and can be started.
+     */
+    @CheckForNull
+    private static String commandLineGit(File cacheDir, EnvVars env) throws InterruptedException {
+        GitTool tool = GitTool.getDefaultInstallation();
+        String gitExe = tool == null ? "git" : tool.getGitExe();
+        if (gitExe.startsWith(JGitTool.MAGIC_EXENAME)) {
+            return null;
+        }
+        try {
+            if (run(cacheDir, env, TaskListener.NULL,
+                    System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1), gitExe, "--version") == 0) {
+                return gitExe;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not start " + gitExe + ", repacking with JGit", e);
+        }
+        return null;
+    }
+
+    /**
+     * Runs a command in a repository, killing it at the deadline.
+     *
+     * @return the exit status.
+     */
+    private static int run(File dir, EnvVars env, TaskListener listener, long deadline, String... cmds)
+            throws IOException, InterruptedException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new IOException("Repack timed out after " + TIMEOUT_MINUTES + " minutes");
+        }
+        return new Launcher.LocalLauncher(listener).launch().cmds(cmds).envs(env).pwd(dir)
+                .stdout(listener).start().joinWithTimeout(remaining, TimeUnit.MILLISECONDS, listener);
+    }
+
+    /**
+     * Reads the pack and loose object counts of a repository.
+     */
+    private static class Statistics implements RepositoryCallback<Properties> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Properties invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            try {
+                return org.eclipse.jgit.api.Git.wrap(repo).gc().getStatistics();
+            } catch (GitAPIException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Walks the commits reachable from all refs, as branch and tag discovery does.
+     */
+    private static class Walk implements RepositoryCallback<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Integer invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            try (RevWalk walk = new RevWalk(repo)) {
+                for (Ref ref : repo.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+                    if (ref.getObjectId() == null) {
+                        continue;
+                    }
+                    RevObject object = walk.peel(walk.parseAny(ref.getObjectId()));
+                    if (object instanceof RevCommit) {
+                        walk.markStart((RevCommit) object);
+                    }
+                }
+                int commits = 0;
+                while (commits < WALK_LIMIT && walk.next() != null) {
+                    commits++;
+                }
+                return commits;
+            }
+        }
+    }
+
+    /**
+     * Repacks a repository with JGit (which also writes reachability bitmaps), giving up at the deadline.
+     */
+    private static class Repack implements RepositoryCallback<Void> {
+        private static final long serialVersionUID = 1L;
+        private final long deadline;
+
+        Repack(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Void invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            try {
+                org.eclipse.jgit.api.Git.wrap(repo).gc().setProgressMonitor(new ProgressMonitor() {
+                    @Override
+                    public void start(int totalTasks) {
+                    }
+
+                    @Override
+                    public void beginTask(String title, int totalWork) {
+                    }
+
+                    @Override
+                    public void update(int completed) {
+                    }
+
+                    @Override
+                    public void endTask() {
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted();
+                    }
+                }).call();
+            } catch (GitAPIException e) {
+                throw new IOException(e);
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Repack timed out after " + TIMEOUT_MINUTES + " minutes");
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.ManagementLink;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Keeps the cache repositories of {@link AbstractGitSCMSource} in {@code JENKINS_HOME/caches} bounded.
+ *
+ * <p>
+ * Each use of a cache repository touches its directory, so the modification time of the directory is its last
+ * access. Once an hour, repositories which were not used for {@link #MAX_AGE_DAYS} days are deleted, then the least
+ * recently used repositories are deleted until the rest fit in {@link #QUOTA_MEGABYTES}. Repositories in use are
+ * never deleted; a deleted repository is simply cloned again when it is next needed.
+ *
+ * <p>
+ * The cache repositories and how often they were used since startup are listed on a management page.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class GitCacheManager extends ManagementLink {
+
+    private static final Logger LOGGER = Logger.getLogger(GitCacheManager.class.getName());
+
+    /**
+     * Cache repositories not used for this many days are deleted, {@code 0} keeps them regardless of age.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the maximum age")
+    public static long MAX_AGE_DAYS = Long.getLong(GitCacheManager.class.getName() + ".maxAgeDays", 30L);
+
+    /**
+     * The total size in megabytes the cache repositories are kept under, {@code 0} for no limit.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the quota")
+    public static long QUOTA_MEGABYTES = Long.getLong(GitCacheManager.class.getName() + ".quotaMegabytes", 0L);
+
+    /**
+     * The names of the cache repositories of this plugin, see {@link AbstractGitSCMSource#getCacheEntry(String)}.
+     */
+    private static final Pattern CACHE_ENTRY = Pattern.compile("git-[0-9a-f]{32}");
+
+    /**
+     * Uses of each cache repository since startup.
+     */
+    private static final ConcurrentMap<String, AtomicLong> HITS = new ConcurrentHashMap<>();
+
+    /**
+     * The remote of each cache repository used since startup.
+     */
+    private static final ConcurrentMap<String, String> REMOTES = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the directory containing the cache repositories.
+     *
+     * @return the directory, or {@code null} if Jenkins is not running.
+     */
+    @CheckForNull
+    static File getCachesDir() {
+        Jenkins jenkins = Jenkins.getInstance();
+        return jenkins == null ? null : new File(jenkins.getRootDir(), "caches");
+    }
+
+    /**
+     * Records the remote of a cache entry. A cache repository created before cache entries were derived from the
+     * normalized remote URL is renamed to the new cache entry, so it is reused rather than cloned again.
+     *
+     * @param cacheEntry       the cache entry of the remote.
+     * @param legacyCacheEntry the cache entry derived from the remote URL as written.
+     * @param remote           the remote URL.
+     */
+    static void remote(@NonNull String cacheEntry, @NonNull String legacyCacheEntry, @NonNull String remote) {
+        REMOTES.put(cacheEntry, remote);
+        File caches = getCachesDir();
+        if (caches == null || legacyCacheEntry.equals(cacheEntry)) {
+            return;
+        }
+        File cacheDir = new File(caches, cacheEntry);
+        File legacyCacheDir = new File(caches, legacyCacheEntry);
+        if (!cacheDir.exists() && legacyCacheDir.isDirectory()) {
+            CacheLocks.Handle lock = CacheLocks.tryWrite(cacheEntry);
+            if (lock == null) {
+                return;
+            }
+            try {
+                CacheLocks.Handle legacyLock = CacheLocks.tryWrite(legacyCacheEntry);
+                if (legacyLock == null) {
+                    return;
+                }
+                try {
+                    if (!cacheDir.exists() && legacyCacheDir.renameTo(cacheDir)) {
+                        LOGGER.log(Level.INFO, "Renamed cache {0} of {1} to {2}",
+                                new Object[]{legacyCacheEntry, remote, cacheEntry});
+                    }
+                } finally {
+                    legacyLock.close();
+                }
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * Records a use of a cache repository.
+     *
+     * @param cacheEntry the cache entry.
+     * @param cacheDir   the cache repository.
+     */
+    static void accessed(@NonNull String cacheEntry, @NonNull File cacheDir) {
+        AtomicLong hits = HITS.get(cacheEntry);
+        if (hits == null) {
+            AtomicLong newHits = new AtomicLong();
+            hits = HITS.putIfAbsent(cacheEntry, newHits);
+            if (hits == null) {
+                hits = newHits;
+            }
+        }
+        hits.incrementAndGet();
+        if (!cacheDir.setLastModified(System.currentTimeMillis())) {
+            LOGGER.log(Level.FINE, "Failed to touch {0}", cacheDir);
+        }
+    }
+
+    /**
+     * Lists the cache repositories, least recently used first.
+     *
+     * @return the cache repositories.
+     */
+    @NonNull
+    public List<Cache> getCaches() {
+        List<Cache> caches = new ArrayList<>();
+        File root = getCachesDir();
+        File[] dirs = root == null ? null : root.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() && CACHE_ENTRY.matcher(file.getName()).matches();
+            }
+        });
+        if (dirs != null) {
+            for (File dir : dirs) {
+                caches.add(new Cache(dir));
+            }
+        }
+        Collections.sort(caches, new Comparator<Cache>() {
+            @Override
+            public int compare(Cache c1, Cache c2) {
+                return Long.compare(c1.lastAccess, c2.lastAccess);
+            }
+        });
+        return caches;
+    }
+
+    /**
+     * Deletes the cache repositories exceeding {@link #MAX_AGE_DAYS} or {@link #QUOTA_MEGABYTES}.
+     *
+     * @param listener where to report the deleted repositories.
+     * @return the number of deleted repositories.
+     */
+    public int evict(@NonNull TaskListener listener) {
+        List<Cache> caches = getCaches();
+        int evicted = 0;
+        if (MAX_AGE_DAYS > 0) {
+            long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS);
+            for (Cache cache : new ArrayList<>(caches)) {
+                if (cache.lastAccess < oldest && cache.delete(oldest, listener)) {
+                    caches.remove(cache);
+                    evicted++;
+                }
+            }
+        }
+        if (QUOTA_MEGABYTES > 0) {
+            long quota = QUOTA_MEGABYTES * FileUtils.ONE_MB;
+            long total = 0;
+            for (Cache cache : caches) {
+                total += cache.getSize();
+            }
+            for (Cache cache : caches) {
+                if (total <= quota) {
+                    break;
+                }
+                if (cache.delete(cache.lastAccess + 1, listener)) {
+                    total -= cache.getSize();
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "folder.png";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "git-caches";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.GitCacheManager_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.GitCacheManager_Description();
+    }
+
+    /**
+     * Describes the use of the {@link BlobCache} since startup.
+     *
+     * @return the summary.
+     */
+    public String getBlobCacheSummary() {
+        long hits = BlobCache.getHitCount();
+        return Messages.GitCacheManager_BlobCache(BlobCache.getSize(),
+                FileUtils.byteCountToDisplaySize(BlobCache.getBytes()), hits, hits + BlobCache.getMissCount(),
+                Math.round(100 * BlobCache.getHitRate()));
+    }
+
+    /**
+     * A cache repository.
+     */
+    public static final class Cache {
+        private final File dir;
+        private final long lastAccess;
+        private long size = -1L;
+
+        Cache(File dir) {
+            this.dir = dir;
+            this.lastAccess = dir.lastModified();
+        }
+
+        public String getName() {
+            return dir.getName();
+        }
+
+        /**
+         * Returns the remote of the cache repository, if it was used since startup.
+         *
+         * @return the remote URL or {@code null}.
+         */
+        @CheckForNull
+        public String getRemote() {
+            return REMOTES.get(dir.getName());
+        }
+
+        public Date getLastAccess() {
+            return new Date(lastAccess);
+        }
+
+        /**
+         * Returns the size of the cache repository, computed on the first call.
+         *
+         * @return the size in bytes.
+         */
+        public long getSize() {
+            if (size < 0) {
+                try {
+                    size = FileUtils.sizeOfDirectory(dir);
+                } catch (IllegalArgumentException e) {
+                    // deleted in the meantime
+                    size = 0L;
+                }
+            }
+            return size;
+        }
+
+        public String getDisplaySize() {
+            return FileUtils.byteCountToDisplaySize(getSize());
+        }
+
+        /**
+         * Returns the uses of the cache repository since startup.
+         *
+         * @return the number of uses.
+         */
+        public long getHits() {
+            AtomicLong hits = HITS.get(dir.getName());
+            return hits == null ? 0L : hits.get();
+        }
+
+        /**
+         * Returns the last repack of the cache repository since startup.
+         *
+         * @return the repack or {@code null}.
+         */
+        @CheckForNull
+        public GitCacheMaintenance.Report getLastRepack() {
+            return GitCacheMaintenance.getLastReport(dir.getName());
+        }
+
+        /**
+         * Deletes the cache repository unless it is in use or was used since {@code usedBefore}.
+         */
+        boolean delete(long usedBefore, TaskListener listener) {
+            String cacheEntry = dir.getName();
+            CacheLocks.Handle lock = CacheLocks.tryWrite(cacheEntry);
+            if (lock == null) {
+                return false;
+            }
+            try {
+                if (dir.lastModified() >= usedBefore) {
+                    return false;
+                }
+                getSize();
+                Util.deleteRecursive(dir);
+                FetchCoalescer.invalidate(cacheEntry);
+                HITS.remove(cacheEntry);
+                listener.getLogger().println("Deleted cache " + cacheEntry + " (" + getDisplaySize() + ") of "
+                        + Util.fixNull(getRemote()) + ", last used " + getLastAccess());
+                REMOTES.remove(cacheEntry);
+                GitCacheMaintenance.forget(cacheEntry);
+                return true;
+            } catch (IOException e) {
+                listener.error("Could not delete cache " + cacheEntry + ": " + e);
+                return false;
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes the cache repositories exceeding the limits every hour.
+     */
+    @Extension
+    public static class Maintenance extends AsyncPeriodicWork {
+
+        public Maintenance() {
+            super("Git cache eviction");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return HOUR;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException, InterruptedException {
+            GitCacheManager manager = ManagementLink.all().get(GitCacheManager.class);
+            if (manager != null) {
+                manager.evict(listener);
+            }
+        }
+    }
+}
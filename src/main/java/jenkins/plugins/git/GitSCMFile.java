@@ -27,21 +27,19 @@ package jenkins.plugins.git;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import jenkins.scm.api.SCMFile;
-import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.lib.FileMode;
-import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevTree;
-import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
 
 /**
  * Implementation of {@link SCMFile} for Git.
@@ -70,45 +68,28 @@ public class GitSCMFile extends SCMFile {
     @NonNull
     @Override
     public Iterable<SCMFile> children() throws IOException, InterruptedException {
-        return fs.invoke(new GitSCMFileSystem.FSFunction<List<SCMFile>>() {
-            @Override
-            public List<SCMFile> invoke(Repository repository) throws IOException, InterruptedException {
-                try (RevWalk walk = new RevWalk(repository)) {
-                    RevCommit commit = walk.parseCommit(fs.getCommitId());
-                    RevTree tree = commit.getTree();
-                    if (isRoot()) {
-                        try (TreeWalk tw = new TreeWalk(repository)) {
-                            tw.addTree(tree);
-                            tw.setRecursive(false);
-                            List<SCMFile> result = new ArrayList<SCMFile>();
-                            while (tw.next()) {
-                                result.add(new GitSCMFile(fs, GitSCMFile.this, tw.getNameString()));
-                            }
-                            return result;
-                        }
-                    } else {
-                        try (TreeWalk tw = TreeWalk.forPath(repository, getPath(), tree)) {
-                            if (tw == null) {
-                                throw new FileNotFoundException();
-                            }
-                            FileMode fileMode = tw.getFileMode(0);
-                            if (fileMode == FileMode.MISSING) {
-                                throw new FileNotFoundException();
-                            }
-                            if (fileMode != FileMode.TREE) {
-                                throw new IOException("Not a directory");
-                            }
-                            tw.enterSubtree();
-                            List<SCMFile> result = new ArrayList<SCMFile>();
-                            while (tw.next()) {
-                                result.add(new GitSCMFile(fs, GitSCMFile.this, tw.getNameString()));
-                            }
-                            return result;
-                        }
-                    }
+        final String path = indexPath();
+        final GitSCMFileSystem.TreeEntry entry = fs.entry(path);
+        if (entry == null) {
+            throw new FileNotFoundException();
+        }
+        if (entry.mode != FileMode.TREE) {
+            throw new IOException("Not a directory");
+        }
+        List<String> names = entry.children;
+        if (names == null) {
+            names = fs.invoke(new GitSCMFileSystem.FSFunction<List<String>>() {
+                @Override
+                public List<String> invoke(Repository repository) throws IOException, InterruptedException {
+                    return fs.list(repository, path, entry);
                 }
-            }
-        });
+            });
+        }
+        List<SCMFile> result = new ArrayList<SCMFile>(names.size());
+        for (String name : names) {
+            result.add(new GitSCMFile(fs, this, name));
+        }
+        return result;
     }
 
     @Override
@@ -120,65 +101,96 @@ public class GitSCMFile extends SCMFile {
     @NonNull
     @Override
     protected Type type() throws IOException, InterruptedException {
-        return fs.invoke(new GitSCMFileSystem.FSFunction<Type>() {
-            @Override
-            public Type invoke(Repository repository) throws IOException, InterruptedException {
-                try (RevWalk walk = new RevWalk(repository)) {
-                    RevCommit commit = walk.parseCommit(fs.getCommitId());
-                    RevTree tree = commit.getTree();
-                    try (TreeWalk tw = TreeWalk.forPath(repository, getPath(), tree)) {
-                        if (tw == null) {
-                            return SCMFile.Type.NONEXISTENT;
-                        }
-                        FileMode fileMode = tw.getFileMode(0);
-                        if (fileMode == FileMode.MISSING) {
-                            return SCMFile.Type.NONEXISTENT;
-                        }
-                        if (fileMode == FileMode.EXECUTABLE_FILE) {
-                            return SCMFile.Type.REGULAR_FILE;
-                        }
-                        if (fileMode == FileMode.REGULAR_FILE) {
-                            return SCMFile.Type.REGULAR_FILE;
-                        }
-                        if (fileMode == FileMode.SYMLINK) {
-                            return SCMFile.Type.LINK;
-                        }
-                        if (fileMode == FileMode.TREE) {
-                            return SCMFile.Type.DIRECTORY;
-                        }
-                        return SCMFile.Type.OTHER;
-                    }
-                }
-            }
-        });
+        GitSCMFileSystem.TreeEntry entry = fs.entry(indexPath());
+        if (entry == null || entry.mode == FileMode.MISSING) {
+            return SCMFile.Type.NONEXISTENT;
+        }
+        if (entry.mode == FileMode.EXECUTABLE_FILE) {
+            return SCMFile.Type.REGULAR_FILE;
+        }
+        if (entry.mode == FileMode.REGULAR_FILE) {
+            return SCMFile.Type.REGULAR_FILE;
+        }
+        if (entry.mode == FileMode.SYMLINK) {
+            return SCMFile.Type.LINK;
+        }
+        if (entry.mode == FileMode.TREE) {
+            return SCMFile.Type.DIRECTORY;
+        }
+        return SCMFile.Type.OTHER;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Blobs small enough for JGit to keep in memory are returned as they were loaded and kept in the {@link BlobCache}.
+     * Larger ones are copied to a temporary file while the cache is locked, since the cache may be repacked or pruned
+     * once the lock is released. The file is deleted when the returned stream is closed.
+     */
     @NonNull
     @Override
     public InputStream content() throws IOException, InterruptedException {
+        final GitSCMFileSystem.TreeEntry entry = fs.entry(indexPath());
+        if (entry == null || entry.mode == FileMode.MISSING) {
+            throw new FileNotFoundException();
+        }
+        if (entry.mode == FileMode.TREE) {
+            throw new IOException("Directory");
+        }
+        byte[] cached = BlobCache.get(entry.id);
+        if (cached != null) {
+            return new ByteArrayInputStream(cached);
+        }
         return fs.invoke(new GitSCMFileSystem.FSFunction<InputStream>() {
             @Override
             public InputStream invoke(Repository repository) throws IOException, InterruptedException {
-                try (RevWalk walk = new RevWalk(repository)) {
-                    RevCommit commit = walk.parseCommit(fs.getCommitId());
-                    RevTree tree = commit.getTree();
-                    try (TreeWalk tw = TreeWalk.forPath(repository, getPath(), tree)) {
-                        if (tw == null) {
-                            throw new FileNotFoundException();
-                        }
-                        FileMode fileMode = tw.getFileMode(0);
-                        if (fileMode == FileMode.MISSING) {
-                            throw new FileNotFoundException();
-                        }
-                        if (fileMode == FileMode.TREE) {
-                            throw new IOException("Directory");
+                ObjectLoader loader = repository.open(entry.id);
+                if (loader.isLarge()) {
+                    return copyToTemporaryFile(loader);
+                }
+                byte[] content = loader.getCachedBytes();
+                BlobCache.put(entry.id, content);
+                return new ByteArrayInputStream(content);
+            }
+        });
+    }
+
+    /**
+     * Copies a blob to a temporary file.
+     *
+     * @return a stream of the file, which deletes it when closed.
+     */
+    private static InputStream copyToTemporaryFile(ObjectLoader loader) throws IOException {
+        final File file = File.createTempFile("git-scm-file", ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                loader.copyTo(out);
+            }
+            return new FileInputStream(file) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (!file.delete()) {
+                            file.deleteOnExit();
                         }
-                        ObjectId objectId = tw.getObjectId(0);
-                        ObjectLoader loader = repository.open(objectId);
-                        return new ByteArrayInputStream(loader.getBytes());
                     }
                 }
+            };
+        } catch (IOException | RuntimeException e) {
+            if (!file.delete()) {
+                file.deleteOnExit();
             }
-        });
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the path of this file in the index of the file system.
+     */
+    private String indexPath() {
+        return isRoot() ? "" : getPath();
     }
 }
@@ -32,12 +32,12 @@ import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.model.Item;
 import hudson.model.TaskListener;
 import hudson.plugins.git.BranchSpec;
-import hudson.plugins.git.GitException;
 import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.GitTool;
 import hudson.plugins.git.UserRemoteConfig;
@@ -51,9 +51,12 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.URISyntaxException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.scm.api.SCMFile;
@@ -62,14 +65,22 @@ import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMRevision;
 import jenkins.scm.api.SCMSource;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.FastDateFormat;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.URIish;
-import org.jenkinsci.plugins.gitclient.ChangelogCommand;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.RepositoryCallback;
@@ -86,12 +97,42 @@ public class GitSCMFileSystem extends SCMFileSystem {
      */
     private static final Logger LOGGER = Logger.getLogger(GitSCMFileSystem.class.getName());
 
+    /**
+     * How long (in milliseconds) a fetch of a head may be reused by file systems of the head which are not given a
+     * revision. Defaults to {@code 0}: only fetches which started after the request are reused.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the staleness bound")
+    public static long HEAD_STALENESS = Long.getLong(GitSCMFileSystem.class.getName() + ".headStaleness", 0L);
+
+    /**
+     * The most commits {@link #changesSince(SCMRevision, OutputStream)} writes. Defaults to
+     * {@link GitSCM#MAX_CHANGELOG}.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the changelog size")
+    public static int MAX_CHANGES = Integer.getInteger(GitSCMFileSystem.class.getName() + ".maxChanges",
+            GitSCM.MAX_CHANGELOG);
+
+    private static final String ISO_8601 = "yyyy-MM-dd'T'HH:mm:ssZ";
+
     private final String cacheEntry;
     private final TaskListener listener;
     private final String remote;
     private final String head;
     private final GitClient client;
     private final ObjectId commitId;
+    /**
+     * The root tree of {@link #commitId}, resolved on first use.
+     */
+    private volatile ObjectId treeId;
+    /**
+     * The commit time of {@link #commitId}, resolved on first use.
+     */
+    private volatile long lastModified = -1L;
+    /**
+     * The tree entries looked up so far by path, the root being {@code ""}. A directory is listed as a whole the
+     * first time one of its entries is looked up, so entries missing from a listed directory do not exist.
+     */
+    private final ConcurrentMap<String, TreeEntry> index = new ConcurrentHashMap<>();
 
     /**
      * Constructor.
@@ -105,6 +146,26 @@ public class GitSCMFileSystem extends SCMFileSystem {
      */
     protected GitSCMFileSystem(GitClient client, String remote, final String head, @CheckForNull
             AbstractGitSCMSource.SCMRevisionImpl rev) throws IOException, InterruptedException {
+        this(client, remote, head, rev, null, null);
+    }
+
+    /**
+     * Constructor for the merge of the head with a base. The caller holds the write lock of the cache, as the merged
+     * trees are written to it.
+     *
+     * @param client     the client
+     * @param remote     the remote GIT URL
+     * @param head       identifier for the head commit to be referenced
+     * @param rev        the revision.
+     * @param merge      the merge to show the result of, or {@code null} to show the head.
+     * @param remoteName the name of the remote in the cache.
+     * @throws IOException on I/O error or if the merge does not apply cleanly
+     * @throws InterruptedException on thread interruption
+     */
+    GitSCMFileSystem(GitClient client, String remote, final String head,
+                     @CheckForNull AbstractGitSCMSource.SCMRevisionImpl rev,
+                     @CheckForNull final InMemoryMerge merge, @CheckForNull final String remoteName)
+            throws IOException, InterruptedException {
         super(rev);
         this.remote = remote;
         this.head = head;
@@ -117,6 +178,14 @@ public class GitSCMFileSystem extends SCMFileSystem {
                 return repository.getRef(head).getObjectId();
             }
         }) : ObjectId.fromString(rev.getHash());
+        if (merge != null && remoteName != null) {
+            treeId = client.withRepository(new RepositoryCallback<ObjectId>() {
+                @Override
+                public ObjectId invoke(Repository repository, VirtualChannel channel) throws IOException {
+                    return merge.merge(repository, remoteName, commitId);
+                }
+            });
+        }
     }
 
     @Override
@@ -126,15 +195,16 @@ public class GitSCMFileSystem extends SCMFileSystem {
 
     @Override
     public long lastModified() throws IOException, InterruptedException {
-        return invoke(new FSFunction<Long>() {
-            @Override
-            public Long invoke(Repository repository) throws IOException {
-                try (RevWalk walk = new RevWalk(repository)) {
-                    RevCommit commit = walk.parseCommit(commitId);
-                    return TimeUnit.SECONDS.toMillis(commit.getCommitTime());
+        if (lastModified < 0L) {
+            invoke(new FSFunction<Void>() {
+                @Override
+                public Void invoke(Repository repository) throws IOException {
+                    resolve(repository);
+                    return null;
                 }
-            }
-        });
+            });
+        }
+        return lastModified;
     }
 
     @NonNull
@@ -148,8 +218,115 @@ public class GitSCMFileSystem extends SCMFileSystem {
     }
 
     /**
-     * Called with an {@link FSFunction} callback with a singleton repository
-     * cache lock.
+     * Parses {@link #commitId} once.
+     */
+    private void resolve(Repository repository) throws IOException {
+        if (treeId == null || lastModified < 0L) {
+            try (RevWalk walk = new RevWalk(repository)) {
+                RevCommit commit = walk.parseCommit(commitId);
+                lastModified = TimeUnit.SECONDS.toMillis(commit.getCommitTime());
+                if (treeId == null) {
+                    treeId = commit.getTree().copy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a path, only taking the repository lock when the path is not indexed yet.
+     *
+     * @param path the path, {@code ""} for the root.
+     * @return the entry or {@code null} if the path does not exist.
+     * @throws IOException on I/O error
+     * @throws InterruptedException on thread interruption
+     */
+    @CheckForNull
+    /*package*/ TreeEntry entry(@NonNull final String path) throws IOException, InterruptedException {
+        TreeEntry entry = index.get(path);
+        if (entry != null) {
+            return entry;
+        }
+        TreeEntry parent = index.get(parentOf(path));
+        if (parent != null && parent.children != null) {
+            return null;
+        }
+        return invoke(new FSFunction<TreeEntry>() {
+            @Override
+            public TreeEntry invoke(Repository repository) throws IOException {
+                return entry(repository, path);
+            }
+        });
+    }
+
+    /**
+     * Looks up a path.
+     *
+     * @param repository the repository.
+     * @param path       the path, {@code ""} for the root.
+     * @return the entry or {@code null} if the path does not exist.
+     * @throws IOException on I/O error
+     */
+    @CheckForNull
+    /*package*/ TreeEntry entry(@NonNull Repository repository, @NonNull String path) throws IOException {
+        TreeEntry entry = index.get(path);
+        if (entry != null) {
+            return entry;
+        }
+        if (path.isEmpty()) {
+            resolve(repository);
+            entry = new TreeEntry(FileMode.TREE, treeId);
+            TreeEntry existing = index.putIfAbsent(path, entry);
+            return existing == null ? entry : existing;
+        }
+        String parentPath = parentOf(path);
+        TreeEntry parent = entry(repository, parentPath);
+        if (parent == null || parent.mode != FileMode.TREE) {
+            return null;
+        }
+        list(repository, parentPath, parent);
+        return index.get(path);
+    }
+
+    /**
+     * Lists a directory, indexing its entries.
+     *
+     * @param repository the repository.
+     * @param path       the path of the directory.
+     * @param directory  the entry of the directory.
+     * @return the names of the entries of the directory.
+     * @throws IOException on I/O error
+     */
+    @NonNull
+    /*package*/ List<String> list(@NonNull Repository repository, @NonNull String path, @NonNull TreeEntry directory)
+            throws IOException {
+        List<String> children = directory.children;
+        if (children != null) {
+            return children;
+        }
+        children = new ArrayList<>();
+        try (TreeWalk tw = new TreeWalk(repository)) {
+            tw.addTree(directory.id);
+            tw.setRecursive(false);
+            while (tw.next()) {
+                String name = tw.getNameString();
+                index.putIfAbsent(path.isEmpty() ? name : path + "/" + name,
+                        new TreeEntry(tw.getFileMode(0), tw.getObjectId(0)));
+                children.add(name);
+            }
+        }
+        children = Collections.unmodifiableList(children);
+        directory.children = children;
+        return children;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    /**
+     * Called with an {@link FSFunction} callback with a shared (read) repository
+     * cache lock, fetches into the cache wait until the callback returns.
      *
      * An example usage might be:
      *
@@ -179,8 +356,7 @@ public class GitSCMFileSystem extends SCMFileSystem {
      * @throws InterruptedException if interrupted
      */
     public <V> V invoke(final FSFunction<V> function) throws IOException, InterruptedException {
-        Lock cacheLock = AbstractGitSCMSource.getCacheLock(cacheEntry);
-        cacheLock.lock();
+        CacheLocks.Handle cacheLock = CacheLocks.read(cacheEntry);
         try {
             File cacheDir = AbstractGitSCMSource.getCacheDir(cacheEntry);
             if (cacheDir == null || !cacheDir.isDirectory()) {
@@ -194,7 +370,7 @@ public class GitSCMFileSystem extends SCMFileSystem {
                 }
             });
         } finally {
-            cacheLock.unlock();
+            cacheLock.close();
         }
     }
 
@@ -208,50 +384,159 @@ public class GitSCMFileSystem extends SCMFileSystem {
             // 2. what has changed between the current revision and the current revision
             return false;
         }
-        Lock cacheLock = AbstractGitSCMSource.getCacheLock(cacheEntry);
-        cacheLock.lock();
-        try {
+        final ObjectId fromCommitId = revision instanceof AbstractGitSCMSource.SCMRevisionImpl
+                ? ObjectId.fromString(((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash())
+                : null;
+        CacheLocks.Handle cacheLock = CacheLocks.read(cacheEntry);
+        try (final Writer out = new OutputStreamWriter(changeLogStream, "UTF-8")) {
             File cacheDir = AbstractGitSCMSource.getCacheDir(cacheEntry);
             if (cacheDir == null || !cacheDir.isDirectory()) {
                 throw new IOException("Closed");
             }
-            boolean executed = false;
-            ChangelogCommand changelog = client.changelog();
-            try (Writer out = new OutputStreamWriter(changeLogStream, "UTF-8")) {
-                changelog.includes(commitId);
-                ObjectId fromCommitId;
-                if (revision instanceof AbstractGitSCMSource.SCMRevisionImpl) {
-                    fromCommitId = ObjectId.fromString(((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash());
-                    changelog.excludes(fromCommitId);
+            client.withRepository(new RepositoryCallback<Void>() {
+                @Override
+                public Void invoke(Repository repository, VirtualChannel channel) throws IOException {
+                    writeChangelog(repository, fromCommitId, out);
+                    return null;
+                }
+            });
+            return !commitId.equals(fromCommitId);
+        } finally {
+            cacheLock.close();
+        }
+    }
+
+    /**
+     * Writes the commits from {@link #commitId} back to (but excluding) a commit, newest first, in the format of
+     * {@code git whatchanged --no-abbrev -M} which {@link hudson.plugins.git.GitChangeLogParser} reads. As with
+     * {@code git whatchanged}, merge commits are left out. The walk stops after {@link #MAX_CHANGES} commits.
+     *
+     * @param repository   the repository.
+     * @param fromCommitId the commit to stop at, or {@code null} to write the history of {@link #commitId}.
+     * @param out          where to write the changelog.
+     * @throws IOException on I/O error
+     */
+    private void writeChangelog(Repository repository, @CheckForNull ObjectId fromCommitId, Writer out)
+            throws IOException {
+        try (RevWalk walk = new RevWalk(repository);
+             ObjectReader reader = repository.newObjectReader();
+             TreeWalk treeWalk = new TreeWalk(reader)) {
+            walk.markStart(walk.parseCommit(commitId));
+            if (fromCommitId != null) {
+                walk.markUninteresting(walk.parseCommit(fromCommitId));
+            }
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            RenameDetector renames = new RenameDetector(repository);
+            int count = 0;
+            for (RevCommit commit = walk.next(); commit != null && count < MAX_CHANGES; commit = walk.next()) {
+                if (commit.getParentCount() > 1) {
+                    continue;
+                }
+                count++;
+                out.write("commit " + commit.name() + "\n");
+                out.write("tree " + commit.getTree().name() + "\n");
+                for (RevCommit parent : commit.getParents()) {
+                    out.write("parent " + parent.name() + "\n");
+                }
+                out.write("author " + identity(commit.getAuthorIdent()) + "\n");
+                out.write("committer " + identity(commit.getCommitterIdent()) + "\n");
+                out.write("\n");
+                String message = StringUtils.removeEnd(commit.getFullMessage(), "\n");
+                out.write("    " + message.replace("\n", "\n    ") + "\n");
+                out.write("\n");
+                treeWalk.reset();
+                if (commit.getParentCount() == 0) {
+                    treeWalk.addTree(new EmptyTreeIterator());
                 } else {
-                    fromCommitId = null;
+                    treeWalk.addTree(walk.parseCommit(commit.getParent(0)).getTree());
                 }
-                changelog.to(out).max(GitSCM.MAX_CHANGELOG).execute();
-                executed = true;
-                return !commitId.equals(fromCommitId);
-            } catch (GitException ge) {
-                throw new IOException("Unable to retrieve changes", ge);
-            } finally {
-                if (!executed) {
-                    changelog.abort();
+                treeWalk.addTree(commit.getTree());
+                renames.reset();
+                renames.addAll(DiffEntry.scan(treeWalk));
+                for (DiffEntry diff : renames.compute(reader, null)) {
+                    out.write(String.format(":%06o %06o %s %s %s\t%s\n", diff.getOldMode().getBits(),
+                            diff.getNewMode().getBits(), diff.getOldId().name(), diff.getNewId().name(),
+                            status(diff), paths(diff)));
                 }
-                changeLogStream.close();
+                out.write("\n");
+                // stream the changelog rather than buffering it
+                out.flush();
             }
-        } finally {
-            cacheLock.unlock();
+        }
+    }
+    /**
+     * Formats a person as {@code git whatchanged} does, with an ISO 8601 date in their time zone.
+     */
+    private static String identity(PersonIdent person) {
+        return person.getName() + " <" + person.getEmailAddress() + "> "
+                + FastDateFormat.getInstance(ISO_8601, person.getTimeZone()).format(person.getWhen());
+    }
+
+    /**
+     * Returns the status letter (and score) of a change as {@code git diff --raw} shows it.
+     */
+    private static String status(DiffEntry diff) {
+        switch (diff.getChangeType()) {
+            case ADD:
+                return "A";
+            case MODIFY:
+                return "M";
+            case DELETE:
+                return "D";
+            case RENAME:
+                return "R" + diff.getScore();
+            case COPY:
+                return "C" + diff.getScore();
+            default:
+                throw new AssertionError("Unexpected change type: " + diff.getChangeType());
+        }
+    }
+
+    /**
+     * Returns the path (or tab separated source and destination paths) of a change as {@code git diff --raw}
+     * shows it.
+     */
+    private static String paths(DiffEntry diff) {
+        switch (diff.getChangeType()) {
+            case ADD:
+                return diff.getNewPath();
+            case RENAME:
+            case COPY:
+                return diff.getOldPath() + "\t" + diff.getNewPath();
+            default:
+                return diff.getOldPath();
+        }
+    }
+
+    /**
+     * An entry of the tree of the commit.
+     */
+    /*package*/ static final class TreeEntry {
+        /*package*/ final FileMode mode;
+        /*package*/ final ObjectId id;
+        /**
+         * The names of the entries of a directory, once listed.
+         */
+        /*package*/ volatile List<String> children;
+
+        TreeEntry(FileMode mode, ObjectId id) {
+            this.mode = mode;
+            this.id = id;
         }
     }
 
     /**
      * Simple callback that is used with
      * {@link #invoke(jenkins.plugins.git.GitSCMFileSystem.FSFunction)}
-     * in order to provide a locked view of the Git repository
+     * in order to provide a locked view of the Git repository.
+     * The lock is shared with other readers, so the function must not modify the repository.
      * @param <V> the return type
      */
     public interface FSFunction<V> {
         /**
-         * Called with a lock on the repository in order to perform some
-         * operations that might result in changes and necessary re-indexing
+         * Called with a read lock on the repository in order to perform some
+         * operations that read the repository
          * @param repository the bare git repository
          * @return value to return from {@link #invoke(jenkins.plugins.git.GitSCMFileSystem.FSFunction)}
          * @throws IOException if there is an I/O error
@@ -270,8 +555,15 @@ public class GitSCMFileSystem extends SCMFileSystem {
                     && ((GitSCM) source).getBranches().size() == 1
                     && ((GitSCM) source).getBranches().get(0).getName().matches(
                     "^((\\Q" + Constants.R_HEADS + "\\E.*)|([^/]+)|(\\*/[^/*]+(/[^/*]+)*))$"
-            );
-            // we only support where the branch spec is obvious
+            )
+                    && (!InMemoryMerge.isMerge(((GitSCM) source).getExtensions())
+                    || InMemoryMerge.of(((GitSCM) source).getExtensions(),
+                            remoteName(((GitSCM) source).getUserRemoteConfigs().get(0))) != null);
+            // we only support where the branch spec is obvious, and merges we can compute in memory
+        }
+
+        private static String remoteName(UserRemoteConfig config) {
+            return StringUtils.defaultIfBlank(config.getName(), Constants.DEFAULT_REMOTE_NAME);
         }
 
         @Override
@@ -291,12 +583,40 @@ public class GitSCMFileSystem extends SCMFileSystem {
             BranchSpec branchSpec = gitSCM.getBranches().get(0);
             String remote = config.getUrl();
             String cacheEntry = AbstractGitSCMSource.getCacheEntry(remote);
-            Lock cacheLock = AbstractGitSCMSource.getCacheLock(cacheEntry);
-            cacheLock.lock();
+            String remoteName = remoteName(config);
+            InMemoryMerge merge = null;
+            if (InMemoryMerge.isMerge(gitSCM.getExtensions())) {
+                merge = InMemoryMerge.of(gitSCM.getExtensions(), remoteName);
+                if (merge == null) {
+                    return null;
+                }
+            }
+            String headName;
+            if (rev != null) {
+                headName = rev.getHead().getName();
+            } else {
+                if (branchSpec.getName().startsWith(Constants.R_HEADS)) {
+                    headName = branchSpec.getName().substring(Constants.R_HEADS.length());
+                } else if (branchSpec.getName().startsWith("*/")) {
+                    headName = branchSpec.getName().substring(2);
+                } else {
+                    headName = branchSpec.getName();
+                }
+            }
+            GitTool tool = gitSCM.resolveGitTool(listener);
+            if (rev != null && merge == null) {
+                GitSCMFileSystem cached = fromCache(cacheEntry, tool, remote,
+                        Constants.R_REMOTES + remoteName + "/" + headName,
+                        (AbstractGitSCMSource.SCMRevisionImpl) rev, listener);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            long requested = FetchCoalescer.now();
+            CacheLocks.Handle cacheLock = CacheLocks.write(cacheEntry);
             try {
                 File cacheDir = AbstractGitSCMSource.getCacheDir(cacheEntry);
                 Git git = Git.with(listener, new EnvVars(EnvVars.masterEnvVars)).in(cacheDir);
-                GitTool tool = gitSCM.resolveGitTool(listener);
                 if (tool != null) {
                     git.using(tool.getGitExe());
                 }
@@ -322,37 +642,22 @@ public class GitSCMFileSystem extends SCMFileSystem {
                 if (!client.hasGitRepo()) {
                     listener.getLogger().println("Creating git repository in " + cacheDir);
                     client.init();
+                    FetchCoalescer.invalidate(cacheEntry);
                 }
-                String remoteName = StringUtils.defaultIfBlank(config.getName(), Constants.DEFAULT_REMOTE_NAME);
                 listener.getLogger().println("Setting " + remoteName + " to " + remote);
                 client.setRemoteUrl(remoteName, remote);
-                listener.getLogger().println("Fetching & pruning " + remoteName + "...");
-                URIish remoteURI = null;
-                try {
-                    remoteURI = new URIish(remoteName);
-                } catch (URISyntaxException ex) {
-                    listener.getLogger().println("URI syntax exception for '" + remoteName + "' " + ex);
+                List<RefSpec> refSpecs = new ArrayList<>();
+                refSpecs.add(new RefSpec(
+                        "+" + Constants.R_HEADS + headName + ":" + Constants.R_REMOTES + remoteName + "/" + headName));
+                if (merge != null && !AbstractGitSCMSource.matches(refSpecs, merge.getRefSpec(remoteName).getSource())) {
+                    refSpecs.add(merge.getRefSpec(remoteName));
                 }
-                String headName;
-                if (rev != null) {
-                    headName = rev.getHead().getName();
-                } else {
-                    if (branchSpec.getName().startsWith(Constants.R_HEADS)) {
-                        headName = branchSpec.getName().substring(Constants.R_HEADS.length());
-                    } else if (branchSpec.getName().startsWith("*/")) {
-                        headName = branchSpec.getName().substring(2);
-                    } else {
-                        headName = branchSpec.getName();
-                    }
-                }
-                client.fetch_().prune().from(remoteURI, Arrays
-                        .asList(new RefSpec(
-                                "+" + Constants.R_HEADS + headName + ":" + Constants.R_REMOTES + remoteName + "/"
-                                        + headName))).execute();
-                listener.getLogger().println("Done.");
-                return new GitSCMFileSystem(client, remote, Constants.R_REMOTES + remoteName + "/" +headName, (AbstractGitSCMSource.SCMRevisionImpl) rev);
+                fetch(client, cacheEntry, requested, remoteName, refSpecs,
+                        wanted((AbstractGitSCMSource.SCMRevisionImpl) rev, merge), listener);
+                return new GitSCMFileSystem(client, remote, Constants.R_REMOTES + remoteName + "/" +headName,
+                        (AbstractGitSCMSource.SCMRevisionImpl) rev, merge, remoteName);
             } finally {
-                cacheLock.unlock();
+                cacheLock.close();
             }
         }
 
@@ -366,12 +671,28 @@ public class GitSCMFileSystem extends SCMFileSystem {
             AbstractGitSCMSource gitSCMSource = (AbstractGitSCMSource) source;
             GitSCMBuilder<?> builder = gitSCMSource.newBuilder(head, rev);
             String cacheEntry = gitSCMSource.getCacheEntry();
-            Lock cacheLock = AbstractGitSCMSource.getCacheLock(cacheEntry);
-            cacheLock.lock();
+            String remoteName = builder.remoteName();
+            InMemoryMerge merge = null;
+            if (InMemoryMerge.isMerge(builder.extensions())) {
+                merge = InMemoryMerge.of(builder.extensions(), remoteName);
+                if (merge == null) {
+                    return null;
+                }
+            }
+            GitTool tool = gitSCMSource.resolveGitTool(builder.gitTool());
+            if (rev != null && merge == null) {
+                GitSCMFileSystem cached = fromCache(cacheEntry, tool, gitSCMSource.getRemote(),
+                        Constants.R_REMOTES + remoteName + "/" + head.getName(),
+                        (AbstractGitSCMSource.SCMRevisionImpl) rev, listener);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            long requested = FetchCoalescer.now();
+            CacheLocks.Handle cacheLock = CacheLocks.write(cacheEntry);
             try {
                 File cacheDir = AbstractGitSCMSource.getCacheDir(cacheEntry);
                 Git git = Git.with(listener, new EnvVars(EnvVars.masterEnvVars)).in(cacheDir);
-                GitTool tool = gitSCMSource.resolveGitTool(builder.gitTool());
                 if (tool != null) {
                     git.using(tool.getGitExe());
                 }
@@ -380,24 +701,106 @@ public class GitSCMFileSystem extends SCMFileSystem {
                 if (!client.hasGitRepo()) {
                     listener.getLogger().println("Creating git repository in " + cacheDir);
                     client.init();
+                    FetchCoalescer.invalidate(cacheEntry);
                 }
-                String remoteName = builder.remoteName();
                 listener.getLogger().println("Setting " + remoteName + " to " + gitSCMSource.getRemote());
                 client.setRemoteUrl(remoteName, gitSCMSource.getRemote());
-                listener.getLogger().println("Fetching & pruning " + remoteName + "...");
-                URIish remoteURI = null;
-                try {
-                    remoteURI = new URIish(remoteName);
-                } catch (URISyntaxException ex) {
-                    listener.getLogger().println("URI syntax exception for '" + remoteName + "' " + ex);
+                List<RefSpec> refSpecs = new ArrayList<>(builder.asRefSpecs());
+                if (merge != null && !AbstractGitSCMSource.matches(refSpecs, merge.getRefSpec(remoteName).getSource())) {
+                    refSpecs.add(merge.getRefSpec(remoteName));
                 }
-                client.fetch_().prune().from(remoteURI, builder.asRefSpecs()).execute();
-                listener.getLogger().println("Done.");
+                fetch(client, cacheEntry, requested, remoteName, refSpecs,
+                        wanted((AbstractGitSCMSource.SCMRevisionImpl) rev, merge), listener);
                 return new GitSCMFileSystem(client, gitSCMSource.getRemote(), Constants.R_REMOTES+remoteName+"/"+head.getName(),
-                        (AbstractGitSCMSource.SCMRevisionImpl) rev);
+                        (AbstractGitSCMSource.SCMRevisionImpl) rev, merge, remoteName);
+            } finally {
+                cacheLock.close();
+            }
+        }
+
+        /**
+         * Builds a file system for a revision which the cache repository already has, without fetching.
+         *
+         * @return the file system, or {@code null} if the revision has to be fetched.
+         */
+        @CheckForNull
+        private static GitSCMFileSystem fromCache(String cacheEntry, @CheckForNull GitTool tool, String remote,
+                                                  String head, AbstractGitSCMSource.SCMRevisionImpl rev,
+                                                  TaskListener listener)
+                throws IOException, InterruptedException {
+            CacheLocks.Handle cacheLock = CacheLocks.read(cacheEntry);
+            try {
+                File cacheDir = AbstractGitSCMSource.getCacheDir(cacheEntry);
+                Git git = Git.with(listener, new EnvVars(EnvVars.masterEnvVars)).in(cacheDir);
+                if (tool != null) {
+                    git.using(tool.getGitExe());
+                }
+                GitClient client = git.getClient();
+                if (!client.hasGitRepo()
+                        || !AbstractGitSCMSource.hasObject(client, ObjectId.fromString(rev.getHash()))) {
+                    return null;
+                }
+                listener.getLogger().println("Using the cached " + rev.getHash() + " of " + remote);
+                return new GitSCMFileSystem(client, remote, head, rev);
             } finally {
-                cacheLock.unlock();
+                cacheLock.close();
+            }
+        }
+
+        /**
+         * Returns the commits a file system needs.
+         *
+         * @return the commits, or {@code null} if it needs the tip of a branch.
+         */
+        @CheckForNull
+        private static List<ObjectId> wanted(@CheckForNull AbstractGitSCMSource.SCMRevisionImpl rev,
+                                             @CheckForNull InMemoryMerge merge) {
+            if (rev == null || merge != null && merge.getBaseHash() == null) {
+                return null;
+            }
+            List<ObjectId> wanted = new ArrayList<>();
+            wanted.add(ObjectId.fromString(rev.getHash()));
+            if (merge != null) {
+                wanted.add(merge.getBaseHash());
+            }
+            return wanted;
+        }
+
+        /**
+         * Fetches and prunes into a cache repository, unless the cache repository already has the wanted commits
+         * or a fetch which can be reused started since the request (or, when a branch tip is wanted, within
+         * {@link #HEAD_STALENESS} before it). The caller holds the write lock of the cache entry.
+         */
+        private static void fetch(GitClient client, String cacheEntry, long requested, String remoteName,
+                                  List<RefSpec> refSpecs, @CheckForNull List<ObjectId> wanted,
+                                  TaskListener listener)
+                throws IOException, InterruptedException {
+            if (wanted != null) {
+                boolean cached = true;
+                for (ObjectId id : wanted) {
+                    cached = cached && AbstractGitSCMSource.hasObject(client, id);
+                }
+                if (cached) {
+                    listener.getLogger().println("Not fetching " + remoteName + ", the cache has " + wanted);
+                    return;
+                }
+            }
+            long since = wanted == null ? requested - TimeUnit.MILLISECONDS.toNanos(HEAD_STALENESS) : requested;
+            if (FetchCoalescer.isFresh(cacheEntry, since, refSpecs, true)) {
+                listener.getLogger().println("Reusing the concurrent fetch of " + remoteName);
+                return;
+            }
+            listener.getLogger().println("Fetching & pruning " + remoteName + "...");
+            URIish remoteURI = null;
+            try {
+                remoteURI = new URIish(remoteName);
+            } catch (URISyntaxException ex) {
+                listener.getLogger().println("URI syntax exception for '" + remoteName + "' " + ex);
             }
+            long started = FetchCoalescer.now();
+            client.fetch_().prune().from(remoteURI, refSpecs).execute();
+            FetchCoalescer.fetched(cacheEntry, started, refSpecs, true);
+            listener.getLogger().println("Done.");
         }
     }
 }
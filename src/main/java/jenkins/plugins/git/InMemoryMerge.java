@@ -0,0 +1,229 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.plugins.git.UserMergeOptions;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.impl.PreBuildMerge;
+import java.io.IOException;
+import java.util.List;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.Merger;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.jenkinsci.plugins.gitclient.MergeCommand;
+
+/**
+ * The merge a {@link MergeWithGitSCMExtension} or {@link PreBuildMerge} performs before a build, computed in memory
+ * against a cache repository so that {@link GitSCMFileSystem} can show the merged tree without a workspace.
+ *
+ * <p>
+ * Only merges with a branch of the remote of the file system are supported, with the default, recursive, resolve or
+ * ours strategy and without parameters. A merge which does not apply cleanly fails with the conflicting paths.
+ */
+final class InMemoryMerge {
+
+    /**
+     * The branch of the remote which is merged.
+     */
+    private final String baseBranch;
+    /**
+     * The commit of {@link #baseBranch} to merge, or {@code null} for its tip.
+     */
+    @CheckForNull
+    private final ObjectId baseHash;
+    /**
+     * Whether the base is checked out and the head merged into it, as {@link PreBuildMerge} does, rather than the
+     * base merged into the head.
+     */
+    private final boolean intoBase;
+    private final MergeStrategy strategy;
+    private final boolean fastForwardOnly;
+
+    private InMemoryMerge(String baseBranch, @CheckForNull ObjectId baseHash, boolean intoBase,
+                          MergeStrategy strategy, boolean fastForwardOnly) {
+        this.baseBranch = baseBranch;
+        this.baseHash = baseHash;
+        this.intoBase = intoBase;
+        this.strategy = strategy;
+        this.fastForwardOnly = fastForwardOnly;
+    }
+
+    /**
+     * Checks whether the extensions of a {@link hudson.plugins.git.GitSCM} merge before building.
+     *
+     * @param extensions the extensions.
+     * @return {@code true} if one of the extensions merges.
+     */
+    static boolean isMerge(@NonNull List<GitSCMExtension> extensions) {
+        for (GitSCMExtension extension : extensions) {
+            if (extension instanceof MergeWithGitSCMExtension || extension instanceof PreBuildMerge) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the merge the extensions of a {@link hudson.plugins.git.GitSCM} perform.
+     *
+     * @param extensions the extensions, merging according to {@link #isMerge(List)}.
+     * @param remoteName the name of the only remote.
+     * @return the merge, or {@code null} if it cannot be computed in memory.
+     */
+    @CheckForNull
+    static InMemoryMerge of(@NonNull List<GitSCMExtension> extensions, @NonNull String remoteName) {
+        InMemoryMerge merge = null;
+        for (GitSCMExtension extension : extensions) {
+            if (extension instanceof MergeWithGitSCMExtension || extension instanceof PreBuildMerge) {
+                if (merge != null) {
+                    // merges twice
+                    return null;
+                }
+                merge = extension instanceof PreBuildMerge
+                        ? of(((PreBuildMerge) extension).getOptions(), remoteName)
+                        : of((MergeWithGitSCMExtension) extension, remoteName);
+                if (merge == null) {
+                    return null;
+                }
+            }
+        }
+        return merge;
+    }
+
+    @CheckForNull
+    private static InMemoryMerge of(MergeWithGitSCMExtension extension, String remoteName) {
+        String prefix = "remotes/" + remoteName + "/";
+        if (!extension.getBaseName().startsWith(prefix)) {
+            return null;
+        }
+        String baseHash = extension.getBaseHash();
+        return new InMemoryMerge(extension.getBaseName().substring(prefix.length()),
+                StringUtils.isBlank(baseHash) ? null : ObjectId.fromString(baseHash), false, MergeStrategy.RECURSIVE,
+                false);
+    }
+
+    @CheckForNull
+    private static InMemoryMerge of(UserMergeOptions options, String remoteName) {
+        String mergeRemote = options.getMergeRemote();
+        String mergeTarget = options.getMergeTarget();
+        if (StringUtils.isNotBlank(mergeRemote) && !mergeRemote.equals(remoteName)
+                || StringUtils.isBlank(mergeTarget) || mergeTarget.contains("$")) {
+            return null;
+        }
+        MergeStrategy strategy;
+        switch (options.getMergeStrategy()) {
+            case DEFAULT:
+            case RECURSIVE:
+                strategy = MergeStrategy.RECURSIVE;
+                break;
+            case RESOLVE:
+                strategy = MergeStrategy.RESOLVE;
+                break;
+            case OURS:
+                strategy = MergeStrategy.OURS;
+                break;
+            default:
+                return null;
+        }
+        return new InMemoryMerge(mergeTarget, null, true, strategy,
+                options.getFastForwardMode() == MergeCommand.GitPluginFastForwardMode.FF_ONLY);
+    }
+
+    /**
+     * Returns the refspec which fetches the base of the merge.
+     *
+     * @param remoteName the name of the remote.
+     * @return the refspec.
+     */
+    @NonNull
+    RefSpec getRefSpec(@NonNull String remoteName) {
+        return new RefSpec("+" + Constants.R_HEADS + baseBranch + ":" + Constants.R_REMOTES + remoteName + "/"
+                + baseBranch);
+    }
+
+    /**
+     * Returns the commit of the base which is merged, if it is pinned.
+     *
+     * @return the commit, or {@code null} if the tip of the base branch is merged.
+     */
+    @CheckForNull
+    ObjectId getBaseHash() {
+        return baseHash;
+    }
+
+    /**
+     * Merges a head with the base in memory. The resulting trees are written to the repository.
+     *
+     * @param repository the cache repository.
+     * @param remoteName the name of the remote.
+     * @param head       the head commit.
+     * @return the merged tree.
+     * @throws IOException if the base cannot be found or the merge does not apply cleanly.
+     */
+    @NonNull
+    ObjectId merge(@NonNull Repository repository, @NonNull String remoteName, @NonNull ObjectId head)
+            throws IOException {
+        ObjectId base = baseHash;
+        if (base == null) {
+            base = repository.resolve(Constants.R_REMOTES + remoteName + "/" + baseBranch);
+            if (base == null) {
+                throw new IOException("Could not find the base branch " + baseBranch + " of the merge");
+            }
+        }
+        try (RevWalk walk = new RevWalk(repository)) {
+            RevCommit headCommit = walk.parseCommit(head);
+            RevCommit baseCommit = walk.parseCommit(base);
+            if (fastForwardOnly) {
+                if (!walk.isMergedInto(baseCommit, headCommit)) {
+                    throw new IOException("Cannot fast-forward " + baseBranch + " to " + head.name());
+                }
+                return headCommit.getTree().copy();
+            }
+            Merger merger = strategy.newMerger(repository, true);
+            boolean merged = intoBase ? merger.merge(baseCommit, headCommit) : merger.merge(headCommit, baseCommit);
+            if (!merged) {
+                if (merger instanceof ResolveMerger) {
+                    ResolveMerger resolveMerger = (ResolveMerger) merger;
+                    throw new IOException("Merge of " + baseBranch + " " + baseCommit.name() + " and " + head.name()
+                            + " conflicts in " + (resolveMerger.getFailingPaths() != null
+                            ? resolveMerger.getFailingPaths().keySet() : resolveMerger.getUnmergedPaths()));
+                }
+                throw new IOException("Merge of " + baseBranch + " " + baseCommit.name() + " and " + head.name()
+                        + " failed");
+            }
+            return merger.getResultTreeId();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Items;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMFile;
+import jenkins.scm.api.SCMSourceOwner;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * The branches seen by the last indexing of a source, with the commit time and tree of their heads and the types of
+ * the paths probed in those trees. Stored beside the configuration of the source owner, it lets the next indexing
+ * skip all object database work for branches which did not move: their probes are answered from the snapshot.
+ *
+ * <p>
+ * Every branch is still processed by the request, so filters, criteria and the observer see exactly what they
+ * would see without the snapshot, and deleted branches are simply not reported. Only facts which cannot change for
+ * a given commit are kept, so a stale snapshot can only cost work, never change a result.
+ */
+final class IndexSnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexSnapshot.class.getName());
+
+    /**
+     * Branch name to head.
+     */
+    private final Map<String, Head> heads = new HashMap<>();
+
+    /**
+     * Tree id to path to type.
+     */
+    private final Map<String, Map<String, SCMFile.Type>> trees = new HashMap<>();
+
+    /**
+     * Probes of the indexing in progress, to be added to {@link #trees} when saved.
+     */
+    private transient Map<String, TreeProbe> probes;
+
+    private static final class Head {
+        private final String commit;
+        private final String tree;
+        private final long lastModified;
+
+        Head(String commit, String tree, long lastModified) {
+            this.commit = commit;
+            this.tree = tree;
+            this.lastModified = lastModified;
+        }
+    }
+
+    @CheckForNull
+    private static XmlFile fileOf(@CheckForNull SCMSourceOwner owner, @CheckForNull String sourceId) {
+        File rootDir = owner == null ? null : owner.getRootDir();
+        if (rootDir == null || sourceId == null) {
+            return null;
+        }
+        return new XmlFile(Items.XSTREAM, new File(rootDir,
+                "git-index-" + Util.getDigestOf(sourceId).substring(0, 16) + ".xml"));
+    }
+
+    /**
+     * Loads the snapshot of a source.
+     *
+     * @param owner    the owner of the source.
+     * @param sourceId the id of the source.
+     * @return the snapshot, or {@code null} if there is none.
+     */
+    @CheckForNull
+    static IndexSnapshot load(@CheckForNull SCMSourceOwner owner, @CheckForNull String sourceId) {
+        XmlFile file = fileOf(owner, sourceId);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        try {
+            return (IndexSnapshot) file.read();
+        } catch (IOException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Could not read " + file + ", indexing all branches", e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts the snapshot of an indexing.
+     *
+     * @return an empty snapshot.
+     */
+    @NonNull
+    static IndexSnapshot create() {
+        IndexSnapshot snapshot = new IndexSnapshot();
+        snapshot.probes = new HashMap<>();
+        return snapshot;
+    }
+
+    /**
+     * Returns a probe answered from the snapshot, if a branch still points to the same commit.
+     *
+     * @param repository the cache repository.
+     * @param name       the branch name.
+     * @param commit     the current head of the branch.
+     * @return the probe, or {@code null} if the branch is new or moved.
+     */
+    @CheckForNull
+    TreeProbe probe(@NonNull Repository repository, @NonNull String name, @NonNull ObjectId commit) {
+        Head head = heads.get(name);
+        if (head == null || !commit.name().equals(head.commit)) {
+            return null;
+        }
+        TreeProbe probe = new TreeProbe(repository, name, head.lastModified, ObjectId.fromString(head.tree));
+        Map<String, SCMFile.Type> types = trees.get(head.tree);
+        if (types != null) {
+            probe.putStats(types);
+        }
+        return probe;
+    }
+
+    /**
+     * Checks whether a branch still points to the same commit.
+     *
+     * @param name   the branch name.
+     * @param commit the current head of the branch.
+     * @return {@code true} if the branch did not move.
+     */
+    boolean isUnchanged(@NonNull String name, @NonNull ObjectId commit) {
+        Head head = heads.get(name);
+        return head != null && commit.name().equals(head.commit);
+    }
+
+    /**
+     * Records the probe of a branch in a snapshot from {@link #create()}.
+     *
+     * @param name   the branch name.
+     * @param commit the head of the branch.
+     * @param probe  the probe of the head.
+     */
+    synchronized void record(@NonNull String name, @NonNull ObjectId commit, @NonNull TreeProbe probe) {
+        heads.put(name, new Head(commit.name(), probe.getTree().name(), probe.lastModified()));
+        probes.put(name, probe);
+    }
+
+    /**
+     * Keeps the branches of the previous snapshot which a partial indexing (an event or an observer limited to some
+     * heads) did not process, so that it does not replace the snapshot of a full indexing.
+     *
+     * @param previous the previous snapshot of the source, if any.
+     */
+    synchronized void keep(@CheckForNull IndexSnapshot previous) {
+        if (previous == null) {
+            return;
+        }
+        for (Map.Entry<String, Head> head : previous.heads.entrySet()) {
+            if (!heads.containsKey(head.getKey())) {
+                heads.put(head.getKey(), head.getValue());
+                Map<String, SCMFile.Type> types = previous.trees.get(head.getValue().tree);
+                if (types != null && !trees.containsKey(head.getValue().tree)) {
+                    trees.put(head.getValue().tree, new HashMap<>(types));
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves a snapshot from {@link #create()} as the snapshot of a source.
+     *
+     * @param owner    the owner of the source.
+     * @param sourceId the id of the source.
+     */
+    synchronized void save(@CheckForNull SCMSourceOwner owner, @CheckForNull String sourceId) {
+        XmlFile file = fileOf(owner, sourceId);
+        if (file == null) {
+            return;
+        }
+        for (TreeProbe probe : probes.values()) {
+            Map<String, SCMFile.Type> types = trees.get(probe.getTree().name());
+            if (types == null) {
+                types = new HashMap<>();
+                trees.put(probe.getTree().name(), types);
+            }
+            types.putAll(probe.getStats());
+        }
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save " + file, e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMSourceCriteria;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Evaluates the criteria of many heads concurrently ahead of the sequential processing of a request.
+ *
+ * <p>
+ * Each head gets a {@link TreeProbe} on which the criteria are evaluated in a worker thread, with their output
+ * discarded. The sequential pass then hands the same probe to the request, which evaluates the criteria again (and
+ * reports to the observer) in the usual order, answering every {@link TreeProbe#stat(String)} from the results kept
+ * by the probe. Heads whose evaluation failed are left to the sequential pass, which reports the failure.
+ */
+final class ProbePrefetcher implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ProbePrefetcher.class.getName());
+
+    private final Repository repository;
+    private final List<SCMSourceCriteria> criteria;
+    private final ExecutorService executor;
+    private final Map<String, Future<TreeProbe>> probes = new HashMap<>();
+
+    ProbePrefetcher(@NonNull Repository repository, @NonNull List<SCMSourceCriteria> criteria, int threads) {
+        this.repository = repository;
+        this.criteria = criteria;
+        this.executor = Executors.newFixedThreadPool(threads,
+                new NamingThreadFactory(new DaemonThreadFactory(), ProbePrefetcher.class.getName()));
+    }
+
+    /**
+     * Starts evaluating the criteria of a head.
+     *
+     * @param name     the name of the head.
+     * @param revision the commit of the head.
+     */
+    void submit(@NonNull final String name, @NonNull final ObjectId revision) {
+        probes.put(name, executor.submit(new Callable<TreeProbe>() {
+            @Override
+            public TreeProbe call() throws Exception {
+                TreeProbe probe;
+                try (RevWalk walk = new RevWalk(repository)) {
+                    walk.setRetainBody(false);
+                    RevCommit commit = walk.parseCommit(revision);
+                    probe = new TreeProbe(repository, name, TimeUnit.SECONDS.toMillis(commit.getCommitTime()),
+                            commit.getTree());
+                }
+                for (SCMSourceCriteria c : criteria) {
+                    if (!c.isHead(probe, TaskListener.NULL)) {
+                        break;
+                    }
+                }
+                return probe;
+            }
+        }));
+    }
+
+    /**
+     * Returns the probe of a head, waiting for its criteria to be evaluated.
+     *
+     * @param name the name of the head.
+     * @return the probe, or {@code null} if the head was not submitted or its evaluation failed.
+     * @throws InterruptedException when interrupted
+     */
+    @CheckForNull
+    TreeProbe take(@NonNull String name) throws InterruptedException {
+        Future<TreeProbe> probe = probes.remove(name);
+        if (probe == null) {
+            return null;
+        }
+        try {
+            return probe.get();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.FINE, "Could not evaluate the criteria of " + name + " ahead of time", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Drops the evaluations which did not start and waits for the running ones, which cannot be interrupted while
+     * walking a tree, so that none reads the repository after the caller released its lock.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                        return;
+                    }
+                    LOGGER.log(Level.FINE, "Still waiting for the criteria evaluations in {0}",
+                            repository.getDirectory());
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.plugins.git.util.RemoteHeadsCache;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.scm.api.SCMEvent;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The references advertised by a remote, shared by the calls of {@link AbstractGitSCMSource} which make up one
+ * indexing run or event ({@code retrieveActions} and {@code retrieve}), so the remote is
+ * listed once per run instead of once per call.
+ *
+ * <p>
+ * An advertisement is reused for {@link #LIFETIME} milliseconds, and never by an event which happened after it was
+ * created. Branch and tag discovery ends the run and {@link #release() releases} it, so the next run lists the remote
+ * again. The references and the symbolic references are each only listed when first asked for, and the references
+ * only as far as asked for: branch and tag discovery lists heads and tags, and only {@code retrieveActions} lists all
+ * references, when the remote does not report its symbolic references.
+ */
+@Restricted(NoExternalUse.class)
+public final class RemoteAdvertisement {
+
+    /**
+     * How long (in milliseconds) an advertisement is reused by the following calls.
+     */
+    @SuppressFBWarnings(value="MS_SHOULD_BE_FINAL", justification="Not final so users can adjust the lifetime")
+    public static long LIFETIME = Long.getLong(RemoteAdvertisement.class.getName() + ".lifetime", 10000L);
+
+    private static final ConcurrentMap<String, RemoteAdvertisement> ADVERTISEMENTS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong LISTINGS = new AtomicLong();
+
+    private final String key;
+    private final String remote;
+    private final long created;
+    /**
+     * The advertised references, guarded by {@code this}.
+     */
+    private Map<String, ObjectId> references;
+    /**
+     * The heads filter {@link #references} were listed with, guarded by {@code this}.
+     */
+    private boolean listedHeadsOnly;
+    /**
+     * The tags filter {@link #references} were listed with, guarded by {@code this}.
+     */
+    private boolean listedTagsOnly;
+    /**
+     * The advertised symbolic references, guarded by {@code this}.
+     */
+    private Map<String, String> symbolicReferences;
+
+    private RemoteAdvertisement(String key, String remote, long created) {
+        this.key = key;
+        this.remote = remote;
+        this.created = created;
+    }
+
+    /**
+     * Returns the current advertisement of a remote.
+     *
+     * @param remote        the remote repository URL.
+     * @param credentialsId the id of the credentials used to access the remote, or {@code null}.
+     * @param event         the event being processed, or {@code null} for a full indexing.
+     * @return the advertisement.
+     */
+    @NonNull
+    public static RemoteAdvertisement of(@NonNull String remote, @CheckForNull String credentialsId,
+                                         @CheckForNull SCMEvent<?> event) {
+        String key = (credentialsId == null ? "" : credentialsId) + '\n' + RemoteHeadsCache.normalizeUrl(remote);
+        long now = System.currentTimeMillis();
+        RemoteAdvertisement advertisement = ADVERTISEMENTS.get(key);
+        if (advertisement != null && !advertisement.isStale(now)
+                && (event == null || event.getTimestamp() <= advertisement.created)) {
+            return advertisement;
+        }
+        for (Iterator<RemoteAdvertisement> it = ADVERTISEMENTS.values().iterator(); it.hasNext(); ) {
+            if (it.next().isStale(now)) {
+                it.remove();
+            }
+        }
+        advertisement = new RemoteAdvertisement(key, remote, now);
+        ADVERTISEMENTS.put(key, advertisement);
+        return advertisement;
+    }
+
+    /**
+     * Discards all advertisements.
+     */
+    public static void clear() {
+        ADVERTISEMENTS.clear();
+    }
+
+    /**
+     * Returns the number of times a remote was listed.
+     *
+     * @return the number of listings since startup.
+     */
+    public static long getListingCount() {
+        return LISTINGS.get();
+    }
+
+    /**
+     * Stops sharing this advertisement with later calls.
+     */
+    public void release() {
+        ADVERTISEMENTS.remove(key, this);
+    }
+
+    private boolean isStale(long now) {
+        return now - created > LIFETIME;
+    }
+
+    /**
+     * Returns the advertised references, listing the remote again only if the current listing does not cover them.
+     * Like {@link GitClient#getRemoteReferences(String, String, boolean, boolean)}, the heads and tags filters are
+     * combined, and all references (including {@code HEAD}) are returned when neither is set.
+     *
+     * @param client    the client to list the remote with.
+     * @param headsOnly whether the heads are wanted.
+     * @param tagsOnly  whether the tags are wanted.
+     * @return the references by name.
+     * @throws InterruptedException when interrupted
+     */
+    @NonNull
+    public synchronized Map<String, ObjectId> getReferences(@NonNull GitClient client, boolean headsOnly,
+                                                            boolean tagsOnly) throws InterruptedException {
+        if (references == null || !covers(headsOnly, tagsOnly)) {
+            LISTINGS.incrementAndGet();
+            references = Collections.unmodifiableMap(
+                    new HashMap<>(client.getRemoteReferences(remote, null, headsOnly, tagsOnly)));
+            listedHeadsOnly = headsOnly;
+            listedTagsOnly = tagsOnly;
+        }
+        if (listedHeadsOnly == headsOnly && listedTagsOnly == tagsOnly) {
+            return references;
+        }
+        Map<String, ObjectId> result = new HashMap<>();
+        for (Map.Entry<String, ObjectId> entry : references.entrySet()) {
+            if (headsOnly && entry.getKey().startsWith(Constants.R_HEADS)
+                    || tagsOnly && entry.getKey().startsWith(Constants.R_TAGS)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Checks whether the current listing holds all the references of a filter, guarded by {@code this}.
+     */
+    private boolean covers(boolean headsOnly, boolean tagsOnly) {
+        if (!listedHeadsOnly && !listedTagsOnly) {
+            return true;
+        }
+        if (!headsOnly && !tagsOnly) {
+            return false;
+        }
+        return (!headsOnly || listedHeadsOnly) && (!tagsOnly || listedTagsOnly);
+    }
+
+    /**
+     * Returns the advertised symbolic references, which are empty if the remote or the client does not report them.
+     *
+     * @param client the client to list the remote with.
+     * @return the targets of the symbolic references by name.
+     * @throws InterruptedException when interrupted
+     */
+    @NonNull
+    public synchronized Map<String, String> getSymbolicReferences(@NonNull GitClient client)
+            throws InterruptedException {
+        if (symbolicReferences == null) {
+            LISTINGS.incrementAndGet();
+            symbolicReferences = Collections.unmodifiableMap(
+                    new HashMap<>(client.getRemoteSymbolicReferences(remote, null)));
+        }
+        return symbolicReferences;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.plugins.git;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.scm.api.SCMFile;
+import jenkins.scm.api.SCMProbe;
+import jenkins.scm.api.SCMProbeStat;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * A {@link SCMProbe} of the tree of a commit in a cache repository. Each {@link #stat(String)} reads the object
+ * database through its own {@link ObjectReader}, so probes may be used from several threads, and its result is kept
+ * for the lifetime of the probe so the criteria can be evaluated again for free.
+ *
+ * <p>
+ * As trees are immutable, results are also kept by tree id and path for all probes, up to {@link #CACHE_SIZE}
+ * results, so branches sharing a tree and indexing runs over unchanged branches do not walk the trees again.
+ */
+class TreeProbe extends SCMProbe {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of results kept for all probes.
+     */
+    private static final long CACHE_SIZE = Long.getLong(TreeProbe.class.getName() + ".cacheSize", 10000L);
+
+    /**
+     * Results by tree id and path.
+     */
+    private static final Cache<Key, SCMProbeStat> CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private final transient Repository repository;
+    private final String name;
+    private final long lastModified;
+    private final ObjectId tree;
+    private final ConcurrentMap<String, SCMProbeStat> stats = new ConcurrentHashMap<>();
+
+    TreeProbe(@NonNull Repository repository, @NonNull String name, long lastModified, @NonNull ObjectId tree) {
+        this.repository = repository;
+        this.name = name;
+        this.lastModified = lastModified;
+        this.tree = tree.copy();
+    }
+
+    /**
+     * Returns the tree of the probe.
+     *
+     * @return the tree id.
+     */
+    @NonNull
+    ObjectId getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the types of the paths probed so far.
+     *
+     * @return path to type.
+     */
+    @NonNull
+    Map<String, SCMFile.Type> getStats() {
+        Map<String, SCMFile.Type> types = new HashMap<>();
+        for (Map.Entry<String, SCMProbeStat> entry : stats.entrySet()) {
+            types.put(entry.getKey(), entry.getValue().getType());
+        }
+        return types;
+    }
+
+    /**
+     * Adds known types of paths of the tree, e.g. from an earlier indexing run.
+     *
+     * @param types path to type.
+     */
+    void putStats(@NonNull Map<String, SCMFile.Type> types) {
+        for (Map.Entry<String, SCMFile.Type> entry : types.entrySet()) {
+            stats.put(entry.getKey(), SCMProbeStat.fromType(entry.getValue()));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // no-op
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    @NonNull
+    public SCMProbeStat stat(@NonNull String path) throws IOException {
+        SCMProbeStat stat = stats.get(path);
+        if (stat == null) {
+            Key key = new Key(tree, path);
+            stat = CACHE.getIfPresent(key);
+            if (stat == null) {
+                try (ObjectReader reader = repository.newObjectReader()) {
+                    stat = stat(reader, tree, path);
+                }
+                CACHE.put(key, stat);
+            }
+            stats.put(path, stat);
+        }
+        return stat;
+    }
+
+    /**
+     * Forgets the results kept for all probes.
+     */
+    static void clearCache() {
+        CACHE.invalidateAll();
+    }
+
+    @NonNull
+    @SuppressFBWarnings(value = "NP_LOAD_OF_KNOWN_NULL_VALUE",
+                        justification = "TreeWalk.forPath can return null, compiler "
+                                + "generated code for try with resources handles it")
+    static SCMProbeStat stat(@NonNull ObjectReader reader, @NonNull ObjectId tree, @NonNull String path)
+            throws IOException {
+        try (TreeWalk tw = TreeWalk.forPath(reader, path, tree)) {
+            if (tw == null) {
+                return SCMProbeStat.fromType(SCMFile.Type.NONEXISTENT);
+            }
+            FileMode fileMode = tw.getFileMode(0);
+            if (fileMode == FileMode.MISSING) {
+                return SCMProbeStat.fromType(SCMFile.Type.NONEXISTENT);
+            }
+            if (fileMode == FileMode.EXECUTABLE_FILE) {
+                return SCMProbeStat.fromType(SCMFile.Type.REGULAR_FILE);
+            }
+            if (fileMode == FileMode.REGULAR_FILE) {
+                return SCMProbeStat.fromType(SCMFile.Type.REGULAR_FILE);
+            }
+            if (fileMode == FileMode.SYMLINK) {
+                return SCMProbeStat.fromType(SCMFile.Type.LINK);
+            }
+            if (fileMode == FileMode.TREE) {
+                return SCMProbeStat.fromType(SCMFile.Type.DIRECTORY);
+            }
+            return SCMProbeStat.fromType(SCMFile.Type.OTHER);
+        }
+    }
+
+    /**
+     * A path in a tree.
+     */
+    private static final class Key {
+        private final ObjectId tree;
+        private final String path;
+
+        Key(ObjectId tree, String path) {
+            this.tree = tree;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return tree.equals((AnyObjectId) key.tree) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tree.hashCode() + path.hashCode();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package hudson.plugins.git.extensions.impl.BuildDataRetention;
+
+def f = namespace(lib.FormTagLib);
+
+f.entry(title:_("Maximum number of branches"), field:"maxBranches") {
+    f.number(clazz:"number", min:0, step:1)
+}
+f.entry(title:_("Maximum age (in builds)"), field:"maxAge") {
+    f.number(clazz:"number", min:0, step:1)
+}
+f.entry(title:_("Forget branches deleted from the remote"), field:"pruneStaleBranches") {
+    f.checkbox()
+}
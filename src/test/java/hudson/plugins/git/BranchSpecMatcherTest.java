@@ -0,0 +1,119 @@
+package hudson.plugins.git;
+
+import hudson.EnvVars;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link BranchSpecMatcher}
+ */
+public class BranchSpecMatcherTest {
+
+    @Test
+    public void testIndexOfFirstMatchingSpec() {
+        BranchSpecMatcher matcher = BranchSpecMatcher.compile(Arrays.asList(
+                new BranchSpec("origin/release-*"),
+                new BranchSpec("master"),
+                new BranchSpec("**")), new EnvVars());
+        assertEquals(0, matcher.indexOf("origin/release-1.0"));
+        assertEquals(1, matcher.indexOf("origin/master"));
+        assertEquals(1, matcher.indexOf("refs/heads/master"));
+        assertEquals(2, matcher.indexOf("origin/feature/x"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        BranchSpecMatcher matcher = BranchSpecMatcher.compile(Arrays.asList(
+                new BranchSpec("master"),
+                new BranchSpec("origin/*/dev")), new EnvVars());
+        assertEquals(-1, matcher.indexOf("origin/test/release"));
+        assertFalse(matcher.matches("dev"));
+        assertTrue(matcher.matches("origin/test/dev"));
+        assertFalse(BranchSpecMatcher.compile(new ArrayList<BranchSpec>(), new EnvVars()).matches("master"));
+    }
+
+    @Test
+    public void testRegexSpecsWithGroups() {
+        BranchSpecMatcher matcher = BranchSpecMatcher.compile(Arrays.asList(
+                new BranchSpec(":origin/(feature|bugfix)/(\\d+)-\\2"),
+                new BranchSpec(":(?i)origin/MASTER")), new EnvVars());
+        assertEquals(0, matcher.indexOf("origin/feature/12-12"));
+        assertEquals(-1, matcher.indexOf("origin/feature/12-13"));
+        assertEquals(1, matcher.indexOf("origin/master"));
+    }
+
+    @Test
+    public void testExpandsEnvironment() {
+        EnvVars env = new EnvVars();
+        env.put("BRANCH", "release");
+        BranchSpecMatcher matcher = BranchSpecMatcher.compile(Arrays.asList(
+                new BranchSpec("master"),
+                new BranchSpec("${BRANCH}")), env);
+        assertEquals(1, matcher.indexOf("origin/release"));
+    }
+
+    /**
+     * Checks the compiled matcher classifies refs like {@link BranchSpec#matches(String, EnvVars)} does, one spec at
+     * a time.
+     */
+    @Test
+    public void testMatchesLikeEachSpec() {
+        List<BranchSpec> specs = new ArrayList<>(Arrays.asList(
+                new BranchSpec("master"),
+                new BranchSpec("refs/heads/dev"),
+                new BranchSpec("origin/team1/*"),
+                new BranchSpec("*/release-*"),
+                new BranchSpec("**/hotfix")));
+        List<String> refs = new ArrayList<>(Arrays.asList(
+                "master", "origin/master", "refs/heads/master", "refs/remotes/origin/master", "dev",
+                "refs/heads/dev", "origin/dev", "origin/team1/x", "origin/team1/x/y", "origin/team2/x",
+                "origin/release-1", "refs/remotes/origin/release-2", "release-3", "origin/feature/12",
+                "origin/feature/x", "origin/bugfix/3", "a/b/hotfix", "hotfix", "origin/other"));
+        assertClassifiedLikeEachSpec(specs, refs);
+        // specs with groups cannot be combined into one pattern
+        specs.add(2, new BranchSpec(":origin/(feature|bugfix)/\\d+"));
+        assertClassifiedLikeEachSpec(specs, refs);
+    }
+
+    /**
+     * Classifies a few thousand refs against 20 specs with the compiled matcher and with
+     * {@link BranchSpec#matches(String, EnvVars)}.
+     */
+    @Test
+    public void testManyRefsAndSpecs() {
+        int refCount = 3000;
+        List<BranchSpec> specs = new ArrayList<>();
+        for (int i = 0; i < 19; i++) {
+            specs.add(new BranchSpec("origin/team" + i + "/*"));
+        }
+        specs.add(new BranchSpec("*/release-*"));
+        List<String> refs = new ArrayList<>();
+        for (int i = 0; i < refCount; i++) {
+            refs.add(i % 3 == 0 ? "refs/remotes/origin/release-" + i : "origin/team" + (i % 40) + "/feature-" + i);
+        }
+        assertClassifiedLikeEachSpec(specs, refs);
+    }
+
+    private static void assertClassifiedLikeEachSpec(List<BranchSpec> specs, List<String> refs) {
+        EnvVars env = new EnvVars();
+        int[] expected = new int[refs.size()];
+        for (int r = 0; r < refs.size(); r++) {
+            expected[r] = -1;
+            for (int s = 0; s < specs.size(); s++) {
+                if (specs.get(s).matches(refs.get(r), env)) {
+                    expected[r] = s;
+                    break;
+                }
+            }
+        }
+        BranchSpecMatcher matcher = BranchSpecMatcher.compile(specs, env);
+        int[] actual = new int[refs.size()];
+        for (int r = 0; r < refs.size(); r++) {
+            actual[r] = matcher.indexOf(refs.get(r));
+        }
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -1,7 +1,11 @@
 package hudson.plugins.git;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.InputStream;
+import java.util.List;
 import static org.junit.Assert.*;
 import org.junit.Rule;
 import org.junit.Test;
@@ -40,4 +44,88 @@ public class GitChangeLogParserTest {
         assertEquals("first message", first.getMsg());
         assertTrue("Temp file delete failed for " + log, log.delete());
     }
+
+    /**
+     * Parses a changelog of a few thousand commits both from a file and from a stream.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLargeChangelog() throws Exception {
+        int commits = 5000;
+        File log = tmpFolder.newFile();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(log))) {
+            for (int i = 0; i < commits; i++) {
+                writer.write(String.format("commit %040x%n", i + 1));
+                writer.write("tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n");
+                writer.write(String.format("parent %040x%n", i));
+                writer.write("author John Doe <john@example.com> 2015-10-06 19:29:47 +0300\n");
+                writer.write("committer Jane Doe <jane@example.com> 1444148987 +0300\n");
+                writer.write("\n");
+                writer.write("    Commit number " + i + "\n");
+                writer.write("\n");
+                writer.write(":100644 100644 bb32d78c69a7bf79849217bc02b1ba2c870a5a66 343a844ad90466d8e829896c1827ca7511d0d1ef M\tfile" + (i % 100) + "\n");
+            }
+        }
+        GitChangeLogParser parser = new GitChangeLogParser(true);
+
+        GitChangeSetList list = parser.parse(null, null, log);
+        assertEquals(commits, list.getLogs().size());
+        GitChangeSet last = list.getLogs().get(0);
+        assertEquals(String.format("%040x", commits), last.getId());
+        assertEquals("Commit number " + (commits - 1), last.getMsg());
+        assertEquals(1444148987000L, last.getTimestamp());
+
+        List<GitChangeSet> parsed;
+        try (InputStream in = new FileInputStream(log)) {
+            parsed = parser.parse(in);
+        }
+        assertEquals(commits, parsed.size());
+        assertEquals(last.getId(), parsed.get(0).getId());
+        assertEquals(last.getTimestamp(), parsed.get(0).getTimestamp());
+    }
+
+    /**
+     * Test a changelog parsed on demand through its index has the same entries, in the same order, as the parsed one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLazyLoad() throws Exception {
+        File log = tmpFolder.newFile();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(log))) {
+            for (int i = 0; i < 250; i++) {
+                writer.write(String.format("commit %040x%n", i + 1));
+                writer.write("author John Doe <john@example.com> 2015-10-06 19:29:47 +0300\n");
+                writer.write("\n");
+                writer.write("    Commit number " + i + "\n");
+                writer.write("\n");
+            }
+            writer.write(String.format("commit %040x%n", 1));
+            writer.write("    duplicate\n");
+        }
+        GitChangeLogParser parser = new GitChangeLogParser(true);
+        long threshold = GitChangeLogParser.LAZY_LOAD_THRESHOLD;
+        GitChangeSetList eager;
+        GitChangeSetList lazy;
+        try {
+            GitChangeLogParser.LAZY_LOAD_THRESHOLD = -1;
+            eager = parser.parse(null, null, log);
+            GitChangeLogParser.LAZY_LOAD_THRESHOLD = 0;
+            lazy = parser.parse(null, null, log);
+        } finally {
+            GitChangeLogParser.LAZY_LOAD_THRESHOLD = threshold;
+        }
+        assertTrue(GitChangeLogIndex.indexFileOf(log).isFile());
+        assertEquals(250, lazy.getLogs().size());
+        assertEquals(eager.getLogs(), lazy.getLogs());
+        for (int i = 0; i < eager.getLogs().size(); i++) {
+            assertEquals(eager.getLogs().get(i).getMsg(), lazy.getLogs().get(i).getMsg());
+            assertSame(lazy, lazy.getLogs().get(i).getParent());
+        }
+        assertEquals("Commit number 0", lazy.getLogs().get(249).getMsg());
+
+        // the saved index is reused
+        assertEquals(250, GitChangeLogIndex.of(log).size());
+    }
 }
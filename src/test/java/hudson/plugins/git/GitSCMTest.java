@@ -31,6 +31,7 @@ import hudson.plugins.git.extensions.impl.*;
 import hudson.plugins.git.util.BuildChooserContext;
 import hudson.plugins.git.util.BuildChooserContext.ContextCallable;
 import hudson.plugins.git.util.BuildData;
+import hudson.plugins.git.util.BuildDataStore;
 import hudson.plugins.git.util.DefaultBuildChooser;
 import hudson.plugins.git.util.GitUtils;
 import hudson.plugins.parameterizedtrigger.BuildTrigger;
@@ -193,6 +194,64 @@ public class GitSCMTest extends AbstractGitTestCase {
         assertFalse("scm polling should not detect any more changes after build", project.poll(listener).hasChanges());
     }
 
+    @Test
+    public void testExternalBranchHistory() throws Exception {
+        FreeStyleProject project = setupSimpleProject("*");
+        GitSCM scm = (GitSCM) project.getScm();
+        scm.getExtensions().add(new ExternalBranchHistory());
+
+        commit("commitFile1", johnDoe, "Commit number 1");
+        build(project, Result.SUCCESS, "commitFile1");
+        git.checkout().ref("master").branch("other").execute();
+        commit("commitFile2", johnDoe, "Commit number 2");
+        FreeStyleBuild build2 = build(project, Result.SUCCESS, "commitFile2");
+
+        BuildData recorded = build2.getAction(BuildData.class);
+        assertNotNull(recorded.getBranchHistory());
+        assertEquals("Only the revision of the build is recorded in the build", 1, recorded.getBuildsByBranchName().size());
+        assertEquals(2, scm.getBuildData(build2).getBuildsByBranchName().size());
+        assertFalse("scm polling should not detect any more changes after build", project.poll(listener).hasChanges());
+    }
+
+    @Test
+    public void testExternalBranchHistoryAfterLastBuildDeleted() throws Exception {
+        FreeStyleProject project = setupSimpleProject("*");
+        GitSCM scm = (GitSCM) project.getScm();
+        scm.getExtensions().add(new ExternalBranchHistory());
+
+        commit("commitFile1", johnDoe, "Commit number 1");
+        FreeStyleBuild build1 = build(project, Result.SUCCESS, "commitFile1");
+        git.checkout().ref("master").branch("other").execute();
+        commit("commitFile2", johnDoe, "Commit number 2");
+        FreeStyleBuild build2 = build(project, Result.SUCCESS, "commitFile2");
+        build2.delete();
+
+        assertEquals(2, scm.getBuildData(build1).getBuildsByBranchName().size());
+        assertFalse("scm polling should not detect any changes after the last build is deleted", project.poll(listener).hasChanges());
+    }
+
+    @Test
+    public void testExternalBranchHistoryAfterRename() throws Exception {
+        FreeStyleProject project = setupSimpleProject("*");
+        GitSCM scm = (GitSCM) project.getScm();
+        scm.getExtensions().add(new ExternalBranchHistory());
+
+        commit("commitFile1", johnDoe, "Commit number 1");
+        build(project, Result.SUCCESS, "commitFile1");
+        File oldRootDir = project.getRootDir();
+        project.renameTo("renamed");
+        git.checkout().ref("master").branch("other").execute();
+        commit("commitFile2", johnDoe, "Commit number 2");
+        FreeStyleBuild build2 = build(project, Result.SUCCESS, "commitFile2");
+
+        assertFalse("branch history written to the old job directory", oldRootDir.exists());
+        String history = build2.getAction(BuildData.class).getBranchHistory();
+        File file = new File(project.getRootDir(), history);
+        assertTrue(file.isFile());
+        assertEquals(2, BuildDataStore.of(project, history).getLatest().getBuildsByBranchName().size());
+        assertFalse("scm polling should not detect any more changes after build", project.poll(listener).hasChanges());
+    }
+
     @Test
     public void testBasicRemotePoll() throws Exception {
 //        FreeStyleProject project = setupProject("master", true, false);
@@ -133,6 +133,46 @@ public class GitStatusTest extends AbstractGitProject {
         assertEquals("URL: nonexistent Branches: ", this.gitStatus.toString());
     }
 
+    @Test
+    public void testDoNotifyCommitAfterProjectChanges() throws Exception {
+        SCMTrigger aMasterTrigger = setupProjectWithTrigger("a", "master", false);
+        this.gitStatus.doNotifyCommit(requestWithNoParameter, "a", "", null);
+        Mockito.verify(aMasterTrigger).run();
+
+        /* Projects created, renamed or reconfigured after the first notification are still found */
+        SCMTrigger bMasterTrigger = setupProjectWithTrigger("b", "master", false);
+        FreeStyleProject renamed = jenkins.createFreeStyleProject();
+        renamed.renameTo("renamed");
+        SCMTrigger renamedTrigger = Mockito.mock(SCMTrigger.class);
+        renamed.addTrigger(renamedTrigger);
+        renamed.setScm(new GitSCM("b"));
+
+        this.gitStatus.doNotifyCommit(requestWithNoParameter, "b", "", null);
+        Mockito.verify(aMasterTrigger).run();
+        Mockito.verify(bMasterTrigger).run();
+        Mockito.verify(renamedTrigger).run();
+    }
+
+    @WithoutJenkins
+    @Test
+    public void testRepositoryIndexKeyMatchesLooselyMatches() throws URISyntaxException {
+        URIish[] uris = {
+            new URIish("https://github.com/jenkinsci/git-plugin"),
+            new URIish("git@github.com:jenkinsci/git-plugin.git/"),
+            new URIish("ssh://git@github.com/jenkinsci/git-plugin.git"),
+            new URIish("https://bitbucket.org/jenkinsci/git-plugin"),
+            new URIish("https://github.com/jenkinsci/git-client-plugin"),
+            new URIish("/tmp/git-plugin.git"),
+            new URIish("a")
+        };
+        for (URIish lhs : uris) {
+            for (URIish rhs : uris) {
+                assertEquals(lhs + " and " + rhs, GitStatus.looselyMatches(lhs, rhs),
+                        RepositoryItemIndex.key(lhs).equals(RepositoryItemIndex.key(rhs)));
+            }
+        }
+    }
+
     @Test
     public void testDoNotifyCommitWithOneBranch() throws Exception {
         SCMTrigger aMasterTrigger = setupProjectWithTrigger("a", "master", false);
@@ -0,0 +1,93 @@
+package hudson.plugins.git.extensions.impl;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.Revision;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.plugins.git.util.Build;
+import hudson.plugins.git.util.BuildData;
+import hudson.util.StreamTaskListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+public class BuildDataRetentionTest {
+
+    private BuildData data;
+    private GitSCM scm;
+    private Run build;
+    private GitClient git;
+    private final TaskListener listener = StreamTaskListener.fromStdout();
+
+    @Before
+    public void setUp() throws Exception {
+        data = new BuildData();
+        scm = Mockito.mock(GitSCM.class);
+        when(scm.getUserRemoteConfigs()).thenReturn(Collections.singletonList(
+                new UserRemoteConfig("https://github.com/jenkinsci/git-plugin", "origin", null, null)));
+        build = Mockito.mock(Run.class);
+        when(build.getNumber()).thenReturn(10);
+        git = Mockito.mock(GitClient.class);
+        for (int i = 1; i <= 10; i++) {
+            data.saveBuild(build("origin/branch" + i, i));
+        }
+    }
+
+    private static Build build(String branch, int number) {
+        ObjectId sha1 = ObjectId.fromString(String.format("%040x", number));
+        List<Branch> branches = new ArrayList<>();
+        branches.add(new Branch(branch, sha1));
+        return new Build(new Revision(sha1, branches), number, Result.SUCCESS);
+    }
+
+    @Test
+    public void maxBranchesKeepsMostRecentlyBuilt() throws Exception {
+        BuildDataRetention retention = new BuildDataRetention();
+        retention.setMaxBranches(3);
+        retention.apply(scm, build, git, listener, data);
+        assertThat(data.getBuildsByBranchName().keySet(),
+                containsInAnyOrder("origin/branch8", "origin/branch9", "origin/branch10"));
+    }
+
+    @Test
+    public void maxAgeForgetsOldBuilds() throws Exception {
+        BuildDataRetention retention = new BuildDataRetention();
+        retention.setMaxAge(2);
+        retention.apply(scm, build, git, listener, data);
+        assertThat(data.getBuildsByBranchName().keySet(),
+                containsInAnyOrder("origin/branch9", "origin/branch10"));
+    }
+
+    @Test
+    public void pruneStaleBranchesKeepsCurrentBuild() throws Exception {
+        when(git.getRemoteBranches()).thenReturn(Collections.singleton(new Branch("origin/branch3", ObjectId.zeroId())));
+        BuildDataRetention retention = new BuildDataRetention();
+        retention.setPruneStaleBranches(true);
+        retention.apply(scm, build, git, listener, data);
+        assertThat(data.getBuildsByBranchName().keySet(),
+                containsInAnyOrder("origin/branch3", "origin/branch10"));
+    }
+
+    @Test
+    public void retentionDoesNotAffectClonedFrom() throws Exception {
+        BuildData previous = data.clone();
+        BuildDataRetention retention = new BuildDataRetention();
+        retention.setMaxBranches(1);
+        retention.apply(scm, build, git, listener, data);
+        assertThat(data.getBuildsByBranchName().keySet(), containsInAnyOrder("origin/branch10"));
+        assertThat(previous.getBuildsByBranchName().size(), is(10));
+    }
+}
@@ -8,6 +8,7 @@ import hudson.plugins.git.UserRemoteConfig;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Random;
 
 import org.eclipse.jgit.lib.ObjectId;
@@ -93,6 +94,33 @@ public class BuildDataTest {
         assertThat(data.getLastBuild(sha1), is(build));
     }
 
+    @Test
+    public void testGetLastBuildAfterBranchMoved() {
+        ObjectId sha1a = ObjectId.fromString("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+        ObjectId sha1b = ObjectId.fromString("bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+        Collection<Branch> branches = new ArrayList<>();
+        branches.add(new Branch("origin/master", sha1a));
+        Build first = new Build(new Revision(sha1a, branches), 1, Result.SUCCESS);
+        data.saveBuild(first);
+        Collection<Branch> others = new ArrayList<>();
+        others.add(new Branch("origin/other", sha1));
+        Build other = new Build(new Revision(sha1, others), 2, Result.SUCCESS);
+        data.saveBuild(other);
+        assertThat(data.getLastBuild(sha1a), is(first));
+
+        branches = new ArrayList<>();
+        branches.add(new Branch("origin/master", sha1b));
+        Build second = new Build(new Revision(sha1b, branches), 3, Result.SUCCESS);
+        data.saveBuild(second);
+        assertThat(data.getLastBuild(sha1b), is(second));
+        assertThat(data.getLastBuild(sha1), is(other));
+        assertNull("build no longer recorded for any branch", data.getLastBuild(sha1a));
+
+        BuildData clone = data.clone();
+        assertThat(clone.getLastBuild(sha1), is(other));
+        assertNull(clone.getLastBuild(sha1a));
+    }
+
     @Test
     public void testGetLastBuildOfBranch() {
         String branchName = "origin/master";
@@ -355,6 +383,30 @@ public class BuildDataTest {
         assertEquals(null, data.getIndex());
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetBuildsByBranchNameIsReadOnly() {
+        data.getBuildsByBranchName().put("origin/master", new Build(new Revision(sha1), 1, Result.SUCCESS));
+    }
+
+    @Test
+    public void testCloneDoesNotChangeOriginal() {
+        Collection<Branch> branches = new ArrayList<>();
+        branches.add(new Branch("origin/master", sha1));
+        Build first = new Build(new Revision(sha1, branches), 1, Result.SUCCESS);
+        data.saveBuild(first);
+
+        BuildData clone = data.clone();
+        ObjectId sha1b = ObjectId.fromString("bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+        branches = new ArrayList<>();
+        branches.add(new Branch("origin/master", sha1b));
+        clone.saveBuild(new Build(new Revision(sha1b, branches), 2, Result.SUCCESS));
+        clone.removeBuildsOfBranches(Collections.singleton("origin/master"));
+
+        assertThat(data.getLastBuildOfBranch("origin/master"), is(first));
+        assertThat(data.getLastBuild(sha1), is(first));
+        assertNull(data.getLastBuild(sha1b));
+    }
+
     @Test
     public void testGetRemoteUrls() {
         assertTrue(data.getRemoteUrls().isEmpty());
@@ -0,0 +1,191 @@
+package hudson.plugins.git.util;
+
+import hudson.model.TaskListener;
+import hudson.plugins.git.AbstractGitRepository;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.Revision;
+import hudson.remoting.VirtualChannel;
+import hudson.util.StreamTaskListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GitUtilsTest extends AbstractGitRepository {
+
+    private final TaskListener listener = StreamTaskListener.fromStderr();
+
+    /**
+     * Creates commits without touching the working tree, each with the given parents.
+     */
+    private static class CommitGraph implements RepositoryCallback<List<ObjectId>> {
+        private static final long serialVersionUID = 1L;
+        /** index of the parent of each commit in the list, or -1 for a root commit */
+        private final int[] parents;
+        /** commit time of each commit in milliseconds, or {@code null} for one second apart in list order */
+        private final long[] times;
+
+        CommitGraph(int[] parents, long[] times) {
+            this.parents = parents;
+            this.times = times;
+        }
+
+        @Override
+        public List<ObjectId> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            List<ObjectId> commits = new ArrayList<>(parents.length);
+            try (ObjectInserter inserter = repo.newObjectInserter()) {
+                ObjectId tree = inserter.insert(new TreeFormatter());
+                for (int i = 0; i < parents.length; i++) {
+                    PersonIdent ident = new PersonIdent("John Doe", "john@example.com",
+                            times == null ? 1000000000000L + i * 1000L : times[i], 0);
+                    CommitBuilder commit = new CommitBuilder();
+                    commit.setTreeId(tree);
+                    if (parents[i] >= 0) {
+                        commit.setParentId(commits.get(parents[i]));
+                    }
+                    commit.setAuthor(ident);
+                    commit.setCommitter(ident);
+                    commit.setMessage("Commit " + i);
+                    commits.add(inserter.insert(commit));
+                }
+                inserter.flush();
+            }
+            return commits;
+        }
+    }
+
+    private List<ObjectId> createCommits(int[] parents) throws Exception {
+        return testGitClient.withRepository(new CommitGraph(parents, null));
+    }
+
+    private List<ObjectId> createCommits(int[] parents, long[] times) throws Exception {
+        return testGitClient.withRepository(new CommitGraph(parents, times));
+    }
+
+    private static Revision revision(String name, ObjectId sha1) {
+        Revision r = new Revision(sha1);
+        r.getBranches().add(new Branch(name, sha1));
+        return r;
+    }
+
+    private static Set<String> names(List<Revision> revisions) {
+        Set<String> names = new HashSet<>();
+        for (Revision r : revisions) {
+            for (Branch b : r.getBranches()) {
+                names.add(b.getName());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void testFilterTipBranches() throws Exception {
+        // 0 - 1 - 2 - 3
+        //      \
+        //       4 - 5
+        List<ObjectId> c = createCommits(new int[] {-1, 0, 1, 2, 1, 4});
+        List<Revision> revisions = new ArrayList<>();
+        revisions.add(revision("origin/old", c.get(1)));
+        revisions.add(revision("origin/master", c.get(3)));
+        revisions.add(revision("origin/feature", c.get(5)));
+        revisions.add(revision("origin/feature-base", c.get(4)));
+        revisions.add(revision("origin/root", c.get(0)));
+
+        GitUtils utils = new GitUtils(listener, testGitClient);
+        assertEquals(new HashSet<>(Arrays.asList("origin/master", "origin/feature")), names(utils.filterTipBranches(revisions)));
+        Collections.reverse(revisions);
+        assertEquals("The result does not depend on the order of the revisions",
+                new HashSet<>(Arrays.asList("origin/master", "origin/feature")), names(utils.filterTipBranches(revisions)));
+    }
+
+    @Test
+    public void testFilterTipBranchesKeepsFirstRevisionOfCommit() throws Exception {
+        List<ObjectId> c = createCommits(new int[] {-1, 0});
+        List<Revision> revisions = new ArrayList<>();
+        revisions.add(revision("origin/a", c.get(1)));
+        revisions.add(revision("origin/b", c.get(1)));
+        revisions.add(revision("origin/c", c.get(0)));
+
+        List<Revision> tips = new GitUtils(listener, testGitClient).filterTipBranches(revisions);
+        assertEquals(1, tips.size());
+        assertEquals("origin/a", tips.get(0).getBranches().iterator().next().getName());
+    }
+
+    /**
+     * A candidate committed long after its descendants is still found to be an ancestor, however many of them are
+     * older than it.
+     */
+    @Test
+    public void testFilterTipBranchesWithClockSkew() throws Exception {
+        assertEquals(new HashSet<>(Arrays.asList("origin/master")), names(filterSkewedTrunk(50)));
+        assertEquals(new HashSet<>(Arrays.asList("origin/master")), names(filterSkewedTrunk(200)));
+    }
+
+    /**
+     * Filters a trunk whose second commit and tip are dated three days after the given number of commits between
+     * them, so that the second commit is the oldest candidate the walk has to reach.
+     */
+    private List<Revision> filterSkewedTrunk(int descendants) throws Exception {
+        int[] parents = new int[descendants + 2];
+        long[] times = new long[parents.length];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i - 1;
+            times[i] = 1000000000000L + i * 1000L;
+        }
+        times[1] += TimeUnit.DAYS.toMillis(3);
+        times[parents.length - 1] = times[1] + 1000L;
+        List<ObjectId> c = createCommits(parents, times);
+        List<Revision> revisions = new ArrayList<>();
+        revisions.add(revision("origin/skewed", c.get(1)));
+        revisions.add(revision("origin/master", c.get(parents.length - 1)));
+        return new GitUtils(listener, testGitClient).filterTipBranches(revisions);
+    }
+
+    /**
+     * Filters branches forking from a trunk, half of them tips.
+     */
+    @Test
+    public void testFilterTipBranchesOfManyBranches() throws Exception {
+        int branches = 300;
+        // commits 0..branches-1 are the trunk, each following one forks a branch from a trunk commit
+        int[] parents = new int[2 * branches];
+        for (int i = 0; i < branches; i++) {
+            parents[i] = i - 1;
+            parents[branches + i] = i;
+        }
+        List<ObjectId> c = createCommits(parents);
+
+        List<Revision> revisions = new ArrayList<>();
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < branches; i++) {
+            if (i % 2 == 0) {
+                // a branch with a commit of its own is a tip
+                revisions.add(revision("origin/branch" + i, c.get(branches + i)));
+                expected.add("origin/branch" + i);
+            } else {
+                // a branch pointing into the trunk is not, unless it is the trunk tip
+                revisions.add(revision("origin/branch" + i, c.get(i)));
+                if (i == branches - 1) {
+                    expected.add("origin/branch" + i);
+                }
+            }
+        }
+        Collections.shuffle(revisions);
+
+        List<Revision> tips = new GitUtils(listener, testGitClient).filterTipBranches(revisions);
+        assertEquals(expected, names(tips));
+    }
+}
@@ -0,0 +1,57 @@
+package hudson.plugins.git.util;
+
+import hudson.plugins.git.AbstractGitRepository;
+import hudson.plugins.git.GitException;
+import java.util.Map;
+import org.eclipse.jgit.lib.ObjectId;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class RefSnapshotTest extends AbstractGitRepository {
+
+    @Test
+    public void testResolvesLikeRevParse() throws Exception {
+        commitNewFile("file-1");
+        testGitClient.tag("annotated", "Annotated tag on commit 1");
+        testGitClient.branch("feature");
+        commitNewFile("file-2");
+
+        RefSnapshot refs = RefSnapshot.of(testGitClient);
+        for (String name : new String[] {"master", "refs/heads/master", "heads/master", "feature", "annotated", "refs/tags/annotated", "HEAD"}) {
+            assertEquals(name, testGitClient.revParse(name), refs.resolve(name));
+            assertEquals(name, testGitClient.revParse(name), refs.revParse(testGitClient, name));
+        }
+        assertNull(refs.resolve("missing"));
+    }
+
+    @Test
+    public void testTagsArePeeled() throws Exception {
+        commitNewFile("file-1");
+        ObjectId commit1 = testGitClient.revParse("HEAD");
+        testGitClient.tag("tag/a", "Applied tag/a to commit 1");
+
+        Map<String, ObjectId> tags = RefSnapshot.of(testGitClient).getRefs("refs/tags/");
+        assertEquals(1, tags.size());
+        assertEquals(commit1, tags.get("refs/tags/tag/a"));
+    }
+
+    @Test
+    public void testRevParseFallsBackForExpressions() throws Exception {
+        commitNewFile("file-1");
+        ObjectId commit1 = testGitClient.revParse("HEAD");
+        commitNewFile("file-2");
+
+        RefSnapshot refs = RefSnapshot.of(testGitClient);
+        assertEquals(commit1, refs.revParse(testGitClient, "HEAD~1"));
+        assertEquals(commit1, refs.revParse(testGitClient, commit1.getName().substring(0, 10)));
+        // refs created after the snapshot are resolved by git
+        testGitClient.branch("later");
+        assertEquals(testGitClient.revParse("later"), refs.revParse(testGitClient, "later"));
+        try {
+            refs.revParse(testGitClient, "origin/missing");
+            fail("Expected a missing ref to fail");
+        } catch (GitException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package hudson.plugins.git.util;
+
+import hudson.plugins.git.GitException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RemoteHeadsCacheTest {
+
+    private static final String URL = "https://github.com/jenkinsci/git-plugin.git";
+
+    private static final int CALLERS = 8;
+
+    private long ttl;
+
+    @Before
+    public void saveTtl() {
+        ttl = RemoteHeadsCache.TTL;
+        RemoteHeadsCache.clear();
+    }
+
+    @After
+    public void restoreTtl() {
+        RemoteHeadsCache.TTL = ttl;
+        RemoteHeadsCache.clear();
+    }
+
+    @Test
+    public void equivalentUrlsShareKey() {
+        assertThat(RemoteHeadsCache.cacheKey("https://GitHub.com/jenkinsci/git-plugin.git", null),
+                is(RemoteHeadsCache.cacheKey("https://github.com/jenkinsci/git-plugin/", null)));
+        assertThat(RemoteHeadsCache.cacheKey("ssh://git@GitHub.com:22/jenkinsci/git-plugin.git", null),
+                is(RemoteHeadsCache.cacheKey("ssh://git@github.com/jenkinsci/git-plugin", null)));
+        assertThat(RemoteHeadsCache.cacheKey("https://github.com:443/jenkinsci/git-plugin", null),
+                is(RemoteHeadsCache.cacheKey(URL, null)));
+        assertThat(RemoteHeadsCache.cacheKey("git@GitHub.com:jenkinsci/git-plugin.git", null),
+                is(RemoteHeadsCache.cacheKey("git@github.com:jenkinsci/git-plugin/", null)));
+        assertThat(RemoteHeadsCache.cacheKey("/srv/repo/", null), is(RemoteHeadsCache.cacheKey("/srv/repo", null)));
+        assertThat(RemoteHeadsCache.cacheKey("file:///srv/repo.git/", null),
+                is(RemoteHeadsCache.cacheKey("file:///srv/repo.git", null)));
+        assertThat(RemoteHeadsCache.cacheKey(URL, "a"), not(RemoteHeadsCache.cacheKey(URL, "b")));
+        assertThat(RemoteHeadsCache.cacheKey(URL, null), not(RemoteHeadsCache.cacheKey("https://github.com/jenkinsci/git-client-plugin.git", null)));
+    }
+
+    @Test
+    public void differentRepositoriesDoNotShareKey() {
+        // scp-like paths are relative to the home directory
+        assertThat(RemoteHeadsCache.cacheKey("git@github.com:jenkinsci/git-plugin.git", null),
+                not(RemoteHeadsCache.cacheKey("ssh://git@github.com/jenkinsci/git-plugin.git", null)));
+        assertThat(RemoteHeadsCache.cacheKey("/srv/repo", null), not(RemoteHeadsCache.cacheKey("srv/repo", null)));
+        assertThat(RemoteHeadsCache.cacheKey("/srv/repo", null), not(RemoteHeadsCache.cacheKey("/srv/repo.git", null)));
+        assertThat(RemoteHeadsCache.cacheKey("file:///srv/repo", null),
+                not(RemoteHeadsCache.cacheKey("file:///srv/repo.git", null)));
+        assertThat(RemoteHeadsCache.cacheKey("ssh://git@github.com:2222/jenkinsci/git-plugin.git", null),
+                not(RemoteHeadsCache.cacheKey("ssh://git@github.com/jenkinsci/git-plugin.git", null)));
+    }
+
+    @Test
+    public void completedAdvertisementReusedWithinTtl() throws Exception {
+        RemoteHeadsCache.TTL = 60000L;
+        GitClient git = Mockito.mock(GitClient.class);
+        Map<String, ObjectId> heads = Collections.singletonMap("refs/heads/master", ObjectId.zeroId());
+        when(git.getHeadRev(URL)).thenReturn(heads);
+
+        long hits = RemoteHeadsCache.getHitCount();
+        Map<String, ObjectId> first = RemoteHeadsCache.getHeadRev(git, URL, null);
+        first.clear();
+        Map<String, ObjectId> second = RemoteHeadsCache.getHeadRev(git, URL, null);
+
+        assertThat(second, is(heads));
+        assertThat(second, not(sameInstance(first)));
+        assertThat(RemoteHeadsCache.getHitCount(), is(hits + 1));
+        verify(git, times(1)).getHeadRev(URL);
+    }
+
+    @Test
+    public void completedAdvertisementNotReusedWithoutTtl() throws Exception {
+        RemoteHeadsCache.TTL = 0L;
+        GitClient git = Mockito.mock(GitClient.class);
+        when(git.getHeadRev(URL)).thenReturn(Collections.singletonMap("refs/heads/master", ObjectId.zeroId()));
+
+        RemoteHeadsCache.getHeadRev(git, URL, null);
+        RemoteHeadsCache.getHeadRev(git, URL, null);
+
+        verify(git, times(2)).getHeadRev(URL);
+    }
+
+    @Test
+    public void concurrentCallersShareOneQuery() throws Exception {
+        RemoteHeadsCache.TTL = 0L;
+        GitClient git = Mockito.mock(GitClient.class);
+        final Map<String, ObjectId> heads = Collections.singletonMap("refs/heads/master", ObjectId.zeroId());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(git.getHeadRev(URL)).thenAnswer(new Answer<Map<String, ObjectId>>() {
+            @Override
+            public Map<String, ObjectId> answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return heads;
+            }
+        });
+
+        long hits = RemoteHeadsCache.getHitCount();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Map<String, ObjectId>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(getHeadRevInOtherThread(git)));
+            }
+            assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+            // every other caller has to join the blocked query before it is released
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (RemoteHeadsCache.getHitCount() < hits + CALLERS - 1) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("Only " + (RemoteHeadsCache.getHitCount() - hits) + " callers joined the query");
+                }
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<Map<String, ObjectId>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS), is(heads));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        verify(git, times(1)).getHeadRev(URL);
+    }
+
+    @Test
+    public void failedQueryNotCached() throws Exception {
+        RemoteHeadsCache.TTL = 60000L;
+        GitClient git = Mockito.mock(GitClient.class);
+        Map<String, ObjectId> heads = Collections.singletonMap("refs/heads/master", ObjectId.zeroId());
+        when(git.getHeadRev(URL)).thenThrow(new GitException("Connection reset")).thenReturn(heads);
+
+        try {
+            RemoteHeadsCache.getHeadRev(git, URL, null);
+            fail("Expected the failure of the remote to be reported");
+        } catch (GitException e) {
+            assertThat(e.getMessage(), is("Connection reset"));
+        }
+        assertThat(RemoteHeadsCache.getHeadRev(git, URL, null), is(heads));
+
+        verify(git, times(2)).getHeadRev(URL);
+    }
+
+    private static Callable<Map<String, ObjectId>> getHeadRevInOtherThread(final GitClient git) {
+        return new Callable<Map<String, ObjectId>>() {
+            @Override
+            public Map<String, ObjectId> call() throws Exception {
+                return RemoteHeadsCache.getHeadRev(git, URL, null);
+            }
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package jenkins.plugins.git;
 
+import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.Action;
@@ -13,8 +14,11 @@ import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.extensions.GitSCMExtension;
 import hudson.plugins.git.extensions.impl.BuildChooserSetting;
 import hudson.plugins.git.extensions.impl.LocalBranch;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -26,14 +30,21 @@ import java.util.UUID;
 import jenkins.plugins.git.traits.BranchDiscoveryTrait;
 import jenkins.plugins.git.traits.IgnoreOnPushNotificationTrait;
 import jenkins.plugins.git.traits.TagDiscoveryTrait;
+import jenkins.scm.api.SCMFile;
 import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMHeadObserver;
 import jenkins.scm.api.SCMRevision;
 import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceCriteria;
 import static org.hamcrest.Matchers.*;
 
 import jenkins.scm.api.SCMSourceOwner;
 import jenkins.scm.api.metadata.PrimaryInstanceMetadataAction;
 import jenkins.scm.api.trait.SCMSourceTrait;
+import jenkins.scm.impl.trait.WildcardSCMHeadFilterTrait;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.gitclient.Git;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
@@ -482,6 +493,212 @@ public class AbstractGitSCMSourceTest {
         assertEquals("+refs/heads/*:refs/remotes/origin/* +refs/merge-requests/*/head:refs/remotes/origin/merge-requests/*", config.getRefspec());
     }
 
+    private static final SCMSourceCriteria JENKINSFILE = new SCMSourceCriteria() {
+        @Override
+        public boolean isHead(@NonNull Probe probe, @NonNull TaskListener listener) throws IOException {
+            return probe.stat("Jenkinsfile").getType() == SCMFile.Type.REGULAR_FILE;
+        }
+    };
+
+    private static List<String> observe(SCMSource source, TaskListener listener) throws Exception {
+        final List<String> observed = new ArrayList<>();
+        source.fetch(JENKINSFILE, new SCMHeadObserver() {
+            @Override
+            public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision) {
+                observed.add(head.getName() + "@" + ((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash());
+            }
+        }, listener);
+        return observed;
+    }
+
+    @Test
+    public void parallelProbesObserveLikeSequentialProbes() throws Exception {
+        sampleRepo.init();
+        for (int i = 0; i < 20; i++) {
+            sampleRepo.git("checkout", "-b", "branch" + i, "master");
+            if (i % 2 == 0) {
+                sampleRepo.write("Jenkinsfile", "node {}");
+                sampleRepo.git("add", "Jenkinsfile");
+            } else {
+                sampleRepo.write("file", "branch" + i);
+            }
+            sampleRepo.git("commit", "--all", "--message=branch" + i);
+        }
+        GitSCMSource source = new GitSCMSource(sampleRepo.toString());
+        source.setTraits(Collections.<SCMSourceTrait>singletonList(new BranchDiscoveryTrait()));
+        TaskListener listener = StreamTaskListener.fromStderr();
+
+        int probeThreads = AbstractGitSCMSource.PROBE_THREADS;
+        try {
+            AbstractGitSCMSource.PROBE_THREADS = 1;
+            List<String> sequential = observe(source, listener);
+            assertEquals(10, sequential.size());
+            AbstractGitSCMSource.PROBE_THREADS = 4;
+            assertEquals(sequential, observe(source, listener));
+        } finally {
+            AbstractGitSCMSource.PROBE_THREADS = probeThreads;
+        }
+    }
+
+    @Test
+    public void incrementalIndexingReusesUnchangedBranches() throws Exception {
+        sampleRepo.init();
+        for (int i = 0; i < 4; i++) {
+            sampleRepo.git("checkout", "-b", "branch" + i, "master");
+            if (i % 2 == 0) {
+                sampleRepo.write("Jenkinsfile", "node {}");
+                sampleRepo.git("add", "Jenkinsfile");
+            } else {
+                sampleRepo.write("file", "branch" + i);
+            }
+            sampleRepo.git("commit", "--all", "--message=branch" + i);
+        }
+        GitSCMSource source = new GitSCMSource(sampleRepo.toString());
+        source.setTraits(Collections.<SCMSourceTrait>singletonList(new BranchDiscoveryTrait()));
+        ActionableSCMSourceOwner owner = Mockito.mock(ActionableSCMSourceOwner.class);
+        when(owner.getRootDir()).thenReturn(new File(r.jenkins.getRootDir(), "owner"));
+        source.setOwner(owner);
+        TaskListener listener = StreamTaskListener.fromStderr();
+
+        List<String> first = observe(source, listener);
+        assertEquals(2, first.size());
+        // the snapshot answers the probes of unchanged branches without the repository
+        TreeProbe.clearCache();
+        IndexSnapshot snapshot = IndexSnapshot.load(owner, source.getId());
+        assertNotNull(snapshot);
+        Repository unused = Mockito.mock(Repository.class);
+        TreeProbe probe = snapshot.probe(unused, "branch0", ObjectId.fromString(sampleRepo.head()));
+        assertNull("branch0 is not the current branch", probe);
+        String branch2 = first.get(first.get(0).startsWith("branch2@") ? 0 : 1);
+        probe = snapshot.probe(unused, "branch2", ObjectId.fromString(branch2.substring(branch2.indexOf('@') + 1)));
+        assertNotNull(probe);
+        assertEquals(SCMFile.Type.REGULAR_FILE, probe.stat("Jenkinsfile").getType());
+        Mockito.verifyZeroInteractions(unused);
+
+        assertEquals(first, observe(source, listener));
+        sampleRepo.git("checkout", "branch1");
+        sampleRepo.write("Jenkinsfile", "node {}");
+        sampleRepo.git("add", "Jenkinsfile");
+        sampleRepo.git("commit", "--all", "--message=branch1 pipeline");
+        List<String> moved = observe(source, listener);
+        assertEquals(3, moved.size());
+        assertThat(moved, hasItem("branch1@" + sampleRepo.head()));
+
+        boolean incremental = AbstractGitSCMSource.INCREMENTAL_INDEXING;
+        try {
+            AbstractGitSCMSource.INCREMENTAL_INDEXING = false;
+            assertEquals(moved, observe(source, listener));
+        } finally {
+            AbstractGitSCMSource.INCREMENTAL_INDEXING = incremental;
+        }
+    }
+
+    @Test
+    public void retrieveActionsAndRetrieveShareTheRemoteAdvertisement() throws Exception {
+        sampleRepo.init();
+        sampleRepo.git("checkout", "-b", "dev");
+        GitSCMSource source = new GitSCMSource(sampleRepo.toString());
+        source.setTraits(Collections.<SCMSourceTrait>singletonList(new BranchDiscoveryTrait()));
+        TaskListener listener = StreamTaskListener.fromStderr();
+        long before = RemoteAdvertisement.getListingCount();
+        source.fetchActions(null, listener);
+        long actions = RemoteAdvertisement.getListingCount() - before;
+        assertEquals("[SCMHead{'dev'}, SCMHead{'master'}]", source.fetch(listener).toString());
+        // retrieveActions lists the references itself when the symbolic references do not report HEAD
+        assertEquals(2, RemoteAdvertisement.getListingCount() - before);
+        assertThat(actions, is(either(equalTo(1L)).or(equalTo(2L))));
+        // the next run lists the remote again
+        sampleRepo.git("checkout", "-b", "dev2");
+        assertEquals("[SCMHead{'dev'}, SCMHead{'dev2'}, SCMHead{'master'}]", source.fetch(listener).toString());
+    }
+
+    @Test
+    public void retrieveHeadOnlyFetchesWhatTheCacheLacks() throws Exception {
+        sampleRepo.init();
+        sampleRepo.git("tag", "-a", "annotated", "-m", "annotated");
+        GitSCMSource source = new GitSCMSource(sampleRepo.toString());
+        source.setTraits(Arrays.asList(new BranchDiscoveryTrait(), new TagDiscoveryTrait()));
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        TaskListener listener = new StreamTaskListener(log);
+        assertEquals(sampleRepo.head(), hashOf(source.fetch(new SCMHead("master"), listener)));
+        log.reset();
+        assertEquals(sampleRepo.head(), hashOf(source.fetch(new SCMHead("master"), listener)));
+        assertThat(log.toString(), containsString("Not fetching origin, the cache is up to date"));
+        // annotated tags resolve to their commit
+        assertEquals(sampleRepo.head(), hashOf(source.fetch(new GitTagSCMHead("annotated", 0L), listener)));
+        sampleRepo.write("file", "modified");
+        sampleRepo.git("commit", "--all", "--message=modified");
+        log.reset();
+        assertEquals(sampleRepo.head(), hashOf(source.fetch(new SCMHead("master"), listener)));
+        assertThat(log.toString(), containsString("Fetching origin..."));
+        assertNull(source.fetch(new SCMHead("nonexistent"), listener));
+        assertNull(source.fetch(new GitTagSCMHead("nonexistent", 0L), listener));
+    }
+
+    private static String hashOf(SCMRevision revision) {
+        return ((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash();
+    }
+
+    @Test
+    public void tagDiscoveryOnlyParsesTagsPassingPrefilters() throws Exception {
+        sampleRepo.init();
+        sampleRepo.git("tag", "-a", "annotated", "-m", "annotated");
+        for (int i = 0; i < 10; i++) {
+            sampleRepo.git("tag", "tag-" + i);
+        }
+        // tags of a tree: parsing their commit fails, so they must be excluded before it is parsed
+        String tree = Git.with(TaskListener.NULL, new EnvVars()).in(sampleRepo.getRoot()).using("jgit").getClient()
+                .revParse("HEAD^{tree}").name();
+        for (int i = 0; i < 30; i++) {
+            sampleRepo.git("tag", "excluded-" + i, tree);
+        }
+        GitSCMSource source = new GitSCMSource(sampleRepo.toString());
+        source.setTraits(Arrays.<SCMSourceTrait>asList(new TagDiscoveryTrait(),
+                new WildcardSCMHeadFilterTrait("annotated tag-*", "")));
+        TaskListener listener = StreamTaskListener.fromStderr();
+
+        Set<SCMHead> heads = source.fetch(listener);
+        assertEquals(11, heads.size());
+        for (SCMHead scmHead : heads) {
+            assertEquals(GitTagSCMHead.class, scmHead.getClass());
+            assertThat(((GitTagSCMHead) scmHead).getTimestamp(), greaterThan(0L));
+        }
+    }
+
+    @Test
+    public void partialIndexingKeepsSnapshotOfOtherBranches() throws Exception {
+        sampleRepo.init();
+        for (int i = 0; i < 2; i++) {
+            sampleRepo.git("checkout", "-b", "branch" + i, "master");
+            sampleRepo.write("Jenkinsfile", "node {}");
+            sampleRepo.git("add", "Jenkinsfile");
+            sampleRepo.git("commit", "--all", "--message=branch" + i);
+        }
+        String branch1 = sampleRepo.head();
+        GitSCMSource source = new GitSCMSource(sampleRepo.toString());
+        source.setTraits(Collections.<SCMSourceTrait>singletonList(new BranchDiscoveryTrait()));
+        ActionableSCMSourceOwner owner = Mockito.mock(ActionableSCMSourceOwner.class);
+        when(owner.getRootDir()).thenReturn(new File(r.jenkins.getRootDir(), "partial-owner"));
+        source.setOwner(owner);
+        TaskListener listener = StreamTaskListener.fromStderr();
+        assertEquals(2, observe(source, listener).size());
+
+        sampleRepo.git("checkout", "branch0");
+        sampleRepo.write("file", "moved");
+        sampleRepo.git("commit", "--all", "--message=moved");
+        SCMHeadObserver.Selector selector = SCMHeadObserver.select(new SCMHead("branch0"));
+        source.fetch(JENKINSFILE, selector, listener);
+        assertEquals(sampleRepo.head(), ((AbstractGitSCMSource.SCMRevisionImpl) selector.result()).getHash());
+
+        IndexSnapshot snapshot = IndexSnapshot.load(owner, source.getId());
+        assertNotNull(snapshot);
+        assertTrue("the event for branch0 kept branch1", snapshot.isUnchanged("branch1", ObjectId.fromString(branch1)));
+        assertTrue(snapshot.isUnchanged("branch0", ObjectId.fromString(sampleRepo.head())));
+        Repository unused = Mockito.mock(Repository.class);
+        assertEquals(SCMFile.Type.REGULAR_FILE,
+                snapshot.probe(unused, "branch1", ObjectId.fromString(branch1)).stat("Jenkinsfile").getType());
+    }
+
     private boolean isWindows() {
         return File.pathSeparatorChar == ';';
     }
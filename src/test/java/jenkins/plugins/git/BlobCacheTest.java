@@ -0,0 +1,48 @@
+package jenkins.plugins.git;
+
+import org.eclipse.jgit.lib.MutableObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class BlobCacheTest {
+
+    private static final ObjectId SMALL = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+
+    private static final ObjectId LARGE = ObjectId.fromString("fedcba9876543210fedcba9876543210fedcba98");
+
+    @After
+    public void clear() {
+        BlobCache.clear();
+    }
+
+    @Test
+    public void smallBlobsAreShared() {
+        long hits = BlobCache.getHitCount();
+        long misses = BlobCache.getMissCount();
+        assertThat(BlobCache.get(SMALL), nullValue());
+        byte[] content = "node {}".getBytes();
+        MutableObjectId id = new MutableObjectId();
+        id.fromObjectId(SMALL);
+        BlobCache.put(id, content);
+        assertThat(BlobCache.get(id), sameInstance(content));
+        id.fromObjectId(LARGE);
+        assertThat("key is a copy of the mutable id", BlobCache.get(SMALL), sameInstance(content));
+        assertThat(BlobCache.getHitCount() - hits, is(2L));
+        assertThat(BlobCache.getMissCount() - misses, is(1L));
+        assertThat(BlobCache.getSize(), is(1L));
+        assertThat(BlobCache.getBytes(), is((long) content.length));
+    }
+
+    @Test
+    public void largeBlobsAreNotKept() {
+        BlobCache.put(LARGE, new byte[1024 * 1024]);
+        assertThat(BlobCache.get(LARGE), nullValue());
+        assertThat(BlobCache.getSize(), is(0L));
+    }
+}
@@ -0,0 +1,120 @@
+package jenkins.plugins.git;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CacheLocksTest {
+
+    private static final String ENTRY = "git-0123456789abcdef";
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private Future<Boolean> readInOtherThread() {
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                CacheLocks.read(ENTRY).close();
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void readersShareTheLock() throws Exception {
+        try (CacheLocks.Handle ignored = CacheLocks.read(ENTRY)) {
+            assertThat(readInOtherThread().get(10, TimeUnit.SECONDS), is(true));
+        }
+    }
+
+    @Test
+    public void writerExcludesReaders() throws Exception {
+        Future<Boolean> read;
+        try (CacheLocks.Handle ignored = CacheLocks.write(ENTRY)) {
+            read = readInOtherThread();
+            try {
+                read.get(200, TimeUnit.MILLISECONDS);
+                fail("Read while the write lock is held");
+            } catch (TimeoutException e) {
+                // expected
+            }
+        }
+        assertThat(read.get(10, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void downgradeLetsReadersIn() throws Exception {
+        try (CacheLocks.Handle handle = CacheLocks.write(ENTRY)) {
+            handle.downgrade();
+            assertThat(readInOtherThread().get(10, TimeUnit.SECONDS), is(true));
+        }
+    }
+
+    @Test
+    public void tryWriteFailsWhileInUse() throws Exception {
+        try (CacheLocks.Handle ignored = CacheLocks.read(ENTRY)) {
+            assertThat(CacheLocks.tryWrite(ENTRY), nullValue());
+        }
+        CacheLocks.Handle handle = CacheLocks.tryWrite(ENTRY);
+        assertThat(handle, notNullValue());
+        handle.close();
+    }
+
+    @Test
+    public void unusedLocksAreEvicted() throws Exception {
+        int size = CacheLocks.size();
+        CacheLocks.Handle handle = CacheLocks.read(ENTRY);
+        assertThat(CacheLocks.size(), is(size + 1));
+        handle.close();
+        handle.close();
+        assertThat(CacheLocks.size(), is(size));
+
+        Lock lock = AbstractGitSCMSource.getCacheLock(ENTRY);
+        lock.lock();
+        assertThat(CacheLocks.size(), is(size + 1));
+        lock.unlock();
+        assertThat(CacheLocks.size(), is(size));
+    }
+
+    @Test
+    public void legacyLockIsExclusive() throws Exception {
+        Lock lock = AbstractGitSCMSource.getCacheLock(ENTRY);
+        lock.lock();
+        Future<Boolean> read;
+        try {
+            read = readInOtherThread();
+            try {
+                read.get(200, TimeUnit.MILLISECONDS);
+                fail("Read while the exclusive lock is held");
+            } catch (TimeoutException e) {
+                // expected
+            }
+        } finally {
+            lock.unlock();
+        }
+        assertThat(read.get(10, TimeUnit.SECONDS), is(true));
+    }
+}
@@ -0,0 +1,73 @@
+package jenkins.plugins.git;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.jgit.transport.RefSpec;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FetchCoalescerTest {
+
+    private static final String ENTRY = "git-fedcba9876543210";
+
+    private static final List<RefSpec> ALL_BRANCHES =
+            Collections.singletonList(new RefSpec("+refs/heads/*:refs/remotes/origin/*"));
+
+    private static final List<RefSpec> MASTER =
+            Collections.singletonList(new RefSpec("+refs/heads/master:refs/remotes/origin/master"));
+
+    @After
+    public void reset() {
+        FetchCoalescer.invalidate(ENTRY);
+        FetchCoalescer.FRESHNESS = 0L;
+    }
+
+    @Test
+    public void fetchStartedAfterRequestIsReused() {
+        long requested = FetchCoalescer.now();
+        FetchCoalescer.fetched(ENTRY, FetchCoalescer.now(), ALL_BRANCHES, true);
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, ALL_BRANCHES, true), is(true));
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, MASTER, false), is(true));
+        assertThat(FetchCoalescer.isFresh("git-0000000000000000", requested, MASTER, false), is(false));
+    }
+
+    @Test
+    public void fetchStartedBeforeRequestIsNotReused() {
+        FetchCoalescer.fetched(ENTRY, FetchCoalescer.now(), ALL_BRANCHES, true);
+        long requested = FetchCoalescer.now() + 1;
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, ALL_BRANCHES, true), is(false));
+
+        FetchCoalescer.FRESHNESS = 60000L;
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, ALL_BRANCHES, true), is(true));
+    }
+
+    @Test
+    public void onlySupersetsAreReused() {
+        long requested = FetchCoalescer.now();
+        FetchCoalescer.fetched(ENTRY, FetchCoalescer.now(), MASTER, false);
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, MASTER, false), is(true));
+        assertThat("not pruned", FetchCoalescer.isFresh(ENTRY, requested, MASTER, true), is(false));
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, ALL_BRANCHES, false), is(false));
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, Arrays.asList(
+                new RefSpec("+refs/heads/master:refs/remotes/origin/master"),
+                new RefSpec("+refs/heads/feature:refs/remotes/origin/feature")), false), is(false));
+        assertThat("other remote name", FetchCoalescer.isFresh(ENTRY, requested, Collections.singletonList(
+                new RefSpec("+refs/heads/master:refs/remotes/upstream/master")), false), is(false));
+
+        FetchCoalescer.fetched(ENTRY, FetchCoalescer.now(),
+                Collections.singletonList(new RefSpec("refs/heads/*:refs/remotes/origin/*")), false);
+        assertThat("not forced", FetchCoalescer.isFresh(ENTRY, requested, MASTER, false), is(false));
+    }
+
+    @Test
+    public void invalidatedFetchIsNotReused() {
+        long requested = FetchCoalescer.now();
+        FetchCoalescer.fetched(ENTRY, FetchCoalescer.now(), ALL_BRANCHES, true);
+        FetchCoalescer.invalidate(ENTRY);
+        assertThat(FetchCoalescer.isFresh(ENTRY, requested, ALL_BRANCHES, true), is(false));
+    }
+}
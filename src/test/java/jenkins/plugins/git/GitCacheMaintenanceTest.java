@@ -0,0 +1,148 @@
+package jenkins.plugins.git;
+
+import hudson.EnvVars;
+import hudson.Util;
+import hudson.model.ManagementLink;
+import hudson.model.PeriodicWork;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitTool;
+import hudson.remoting.VirtualChannel;
+import hudson.tools.ToolProperty;
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.gitclient.JGitTool;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class GitCacheMaintenanceTest {
+
+    @ClassRule
+    public static JenkinsRule r = new JenkinsRule();
+
+    private final TaskListener listener = StreamTaskListener.fromStderr();
+
+    @After
+    public void deleteCaches() throws Exception {
+        Util.deleteRecursive(GitCacheManager.getCachesDir());
+    }
+
+    /**
+     * Commits a tree of distinct blobs, each written as a loose object.
+     */
+    private static class LooseObjects implements RepositoryCallback<Void> {
+        private static final long serialVersionUID = 1L;
+        private final int count;
+
+        LooseObjects(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public Void invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            try (ObjectInserter inserter = repo.newObjectInserter()) {
+                TreeFormatter tree = new TreeFormatter();
+                for (int i = 0; i < count; i++) {
+                    // tree entries must be sorted by name
+                    String name = String.format("file-%06d", i);
+                    tree.append(name, FileMode.REGULAR_FILE, inserter.insert(Constants.OBJ_BLOB, Constants.encode(name)));
+                }
+                PersonIdent ident = new PersonIdent("John Doe", "john@example.com");
+                CommitBuilder commit = new CommitBuilder();
+                commit.setTreeId(inserter.insert(tree));
+                commit.setAuthor(ident);
+                commit.setCommitter(ident);
+                commit.setMessage("Many files");
+                ObjectId id = inserter.insert(commit);
+                inserter.flush();
+                RefUpdate update = repo.updateRef("refs/remotes/origin/master");
+                update.setNewObjectId(id);
+                update.forceUpdate();
+            }
+            return null;
+        }
+    }
+
+    private static GitCacheManager.Cache createCache(String remote, int looseObjects) throws Exception {
+        String cacheEntry = AbstractGitSCMSource.getCacheEntry(remote);
+        File cacheDir = AbstractGitSCMSource.getCacheDir(cacheEntry);
+        GitClient client = Git.with(TaskListener.NULL, new EnvVars()).in(cacheDir).using("jgit").getClient();
+        client.init();
+        client.withRepository(new LooseObjects(looseObjects));
+        for (GitCacheManager.Cache cache : ManagementLink.all().get(GitCacheManager.class).getCaches()) {
+            if (cache.getName().equals(cacheEntry)) {
+                return cache;
+            }
+        }
+        throw new AssertionError("No cache " + cacheEntry);
+    }
+
+    private static GitCacheMaintenance maintenance() {
+        return PeriodicWork.all().get(GitCacheMaintenance.class);
+    }
+
+    @Test
+    public void repacksLooseObjects() throws Exception {
+        GitCacheManager.Cache cache = createCache("https://example.com/loose.git", 7000);
+        GitCacheMaintenance.Report report = maintenance().maintain(cache, listener);
+        assertThat(report, notNullValue());
+        assertThat(report.getLooseObjectsBefore() >= 7000, is(true));
+        assertThat(report.getLooseObjectsAfter(), is(0L));
+        assertThat(report.getPacksAfter(), is(1L));
+        assertThat(cache.getLastRepack(), is(report));
+        assertThat("not due before the interval", maintenance().maintain(cache, listener), nullValue());
+    }
+
+    @Test
+    public void repacksWithJGitWhenItIsTheDefaultTool() throws Exception {
+        GitTool.DescriptorImpl descriptor = r.jenkins.getDescriptorByType(GitTool.DescriptorImpl.class);
+        GitTool[] installations = descriptor.getInstallations();
+        descriptor.setInstallations(new JGitTool(Collections.<ToolProperty<?>>emptyList()));
+        try {
+            GitCacheManager.Cache cache = createCache("https://example.com/jgit.git", 7000);
+            GitCacheMaintenance.Report report = maintenance().maintain(cache, listener);
+            assertThat(report, notNullValue());
+            assertThat(report.getLooseObjectsAfter(), is(0L));
+            assertThat(report.getPacksAfter(), is(1L));
+        } finally {
+            descriptor.setInstallations(installations);
+        }
+    }
+
+    @Test
+    public void smallRepositoriesAreLeftAlone() throws Exception {
+        GitCacheManager.Cache cache = createCache("https://example.com/small.git", 10);
+        assertThat(maintenance().maintain(cache, listener), nullValue());
+        assertThat(cache.getLastRepack(), nullValue());
+    }
+
+    @Test
+    public void busyRepositoriesAreRetriedLater() throws Exception {
+        GitCacheManager.Cache cache = createCache("https://example.com/busy.git", 7000);
+        try (CacheLocks.Handle ignored = CacheLocks.read(cache.getName())) {
+            assertThat(maintenance().maintain(cache, listener), nullValue());
+        }
+        assertThat("backing off", maintenance().maintain(cache, listener), nullValue());
+        assertThat(cache.getLastRepack(), nullValue());
+    }
+}
@@ -0,0 +1,102 @@
+package jenkins.plugins.git;
+
+import hudson.Util;
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class GitCacheManagerTest {
+
+    @ClassRule
+    public static JenkinsRule r = new JenkinsRule();
+
+    private final long maxAgeDays = GitCacheManager.MAX_AGE_DAYS;
+    private final long quotaMegabytes = GitCacheManager.QUOTA_MEGABYTES;
+
+    @After
+    public void restoreLimits() throws Exception {
+        GitCacheManager.MAX_AGE_DAYS = maxAgeDays;
+        GitCacheManager.QUOTA_MEGABYTES = quotaMegabytes;
+        Util.deleteRecursive(GitCacheManager.getCachesDir());
+    }
+
+    private static GitCacheManager manager() {
+        return r.jenkins.getExtensionList(GitCacheManager.class).get(0);
+    }
+
+    @Test
+    public void equivalentRemotesShareCacheEntry() {
+        String entry = AbstractGitSCMSource.getCacheEntry("https://github.com/jenkinsci/git-plugin.git");
+        assertThat(AbstractGitSCMSource.getCacheEntry("https://GitHub.com/jenkinsci/git-plugin/"), is(entry));
+        assertThat(AbstractGitSCMSource.getCacheEntry("https://github.com:443/jenkinsci/git-plugin"), is(entry));
+        assertThat(AbstractGitSCMSource.getCacheEntry("git@github.com:jenkinsci/git-plugin.git"),
+                not(AbstractGitSCMSource.getCacheEntry("ssh://git@github.com/jenkinsci/git-plugin")));
+        assertThat(AbstractGitSCMSource.getCacheEntry("/srv/repo"),
+                not(AbstractGitSCMSource.getCacheEntry("srv/repo")));
+        assertThat(AbstractGitSCMSource.getCacheEntry("https://github.com/jenkinsci/git-client-plugin.git"),
+                not(entry));
+    }
+
+    @Test
+    public void legacyCacheIsRenamed() throws Exception {
+        String remote = "https://github.com/jenkinsci/git-plugin.git";
+        File legacy = new File(GitCacheManager.getCachesDir(), "git-" + Util.getDigestOf(remote));
+        assertThat(new File(legacy, "objects").mkdirs(), is(true));
+
+        String entry = AbstractGitSCMSource.getCacheEntry(remote);
+        assertThat(legacy.exists(), is(false));
+        assertThat(new File(AbstractGitSCMSource.getCacheDir(entry), "objects").isDirectory(), is(true));
+    }
+
+    @Test
+    public void unusedCachesAreEvicted() throws Exception {
+        File old = AbstractGitSCMSource.getCacheDir(AbstractGitSCMSource.getCacheEntry("https://example.com/old.git"));
+        File recent = AbstractGitSCMSource.getCacheDir(AbstractGitSCMSource.getCacheEntry("https://example.com/recent.git"));
+        assertThat(old.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10)), is(true));
+        assertThat(manager().getCaches().size(), is(2));
+        assertThat(manager().getCaches().get(0).getName(), is(old.getName()));
+        assertThat(manager().getCaches().get(1).getHits(), is(1L));
+
+        GitCacheManager.MAX_AGE_DAYS = 5;
+        assertThat(manager().evict(StreamTaskListener.fromStderr()), is(1));
+        assertThat(old.exists(), is(false));
+        assertThat(recent.exists(), is(true));
+    }
+
+    @Test
+    public void leastRecentlyUsedCachesAreEvictedOverQuota() throws Exception {
+        File[] dirs = new File[3];
+        for (int i = 0; i < dirs.length; i++) {
+            dirs[i] = AbstractGitSCMSource.getCacheDir(AbstractGitSCMSource.getCacheEntry("https://example.com/" + i));
+            Files.write(new File(dirs[i], "pack").toPath(), new byte[600 * 1024]);
+            assertThat(dirs[i].setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3 - i)), is(true));
+        }
+
+        GitCacheManager.MAX_AGE_DAYS = 0;
+        GitCacheManager.QUOTA_MEGABYTES = 1;
+        assertThat(manager().evict(StreamTaskListener.fromStderr()), is(2));
+        assertThat(dirs[0].exists(), is(false));
+        assertThat(dirs[1].exists(), is(false));
+        assertThat(dirs[2].exists(), is(true));
+    }
+
+    @Test
+    public void cachesInUseAreNotEvicted() throws Exception {
+        File dir = AbstractGitSCMSource.getCacheDir(AbstractGitSCMSource.getCacheEntry("https://example.com/busy.git"));
+        assertThat(dir.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10)), is(true));
+        GitCacheManager.MAX_AGE_DAYS = 5;
+        try (CacheLocks.Handle ignored = CacheLocks.read(dir.getName())) {
+            assertThat(manager().evict(StreamTaskListener.fromStderr()), is(0));
+        }
+        assertThat(dir.exists(), is(true));
+    }
+}
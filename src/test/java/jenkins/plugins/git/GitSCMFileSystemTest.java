@@ -28,14 +28,22 @@ package jenkins.plugins.git;
 import hudson.EnvVars;
 import hudson.model.TaskListener;
 import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.GitChangeLogParser;
+import hudson.plugins.git.GitChangeSet;
 import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.SubmoduleConfig;
+import hudson.plugins.git.UserMergeOptions;
 import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.impl.PreBuildMerge;
 import hudson.plugins.git.GitException;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import jenkins.plugins.git.CliGitCommand;
@@ -54,6 +62,7 @@ import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
@@ -65,6 +74,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link AbstractGitSCMSource}
@@ -266,6 +276,137 @@ public class GitSCMFileSystemTest {
         assertThat(file2.contentAsString(), is("new"));
     }
 
+    @Test
+    public void cachedRevisionNeedsNoRemote() throws Exception {
+        sampleRepo.init();
+        sampleRepo.write("Jenkinsfile", "node {}");
+        sampleRepo.git("add", "Jenkinsfile");
+        sampleRepo.git("commit", "--all", "--message=pipeline");
+        SCMSource source = new GitSCMSource(null, sampleRepo.toString(), "", "*", "", true);
+        SCMRevision revision = source.fetch(new SCMHead("master"), null);
+        File moved = new File(sampleRepo.getRoot().getParentFile(), sampleRepo.getRoot().getName() + "-moved");
+        assertTrue(sampleRepo.getRoot().renameTo(moved));
+        try {
+            SCMFileSystem fs = SCMFileSystem.of(source, new SCMHead("master"), revision);
+            assertThat(fs, notNullValue());
+            assertThat(fs.getRoot().child("Jenkinsfile").contentAsString(), is("node {}"));
+        } finally {
+            assertTrue(moved.renameTo(sampleRepo.getRoot()));
+        }
+    }
+
+    @Test
+    public void mergeIsComputedInMemory() throws Exception {
+        sampleRepo.init();
+        sampleRepo.git("checkout", "-b", "dev");
+        sampleRepo.write("dev", "from dev");
+        sampleRepo.git("add", "dev");
+        sampleRepo.git("commit", "--all", "--message=dev");
+        sampleRepo.git("checkout", "master");
+        sampleRepo.write("master", "from master");
+        sampleRepo.git("add", "master");
+        sampleRepo.git("commit", "--all", "--message=master");
+        GitSCM scm = new GitSCM(GitSCM.createRepoList(sampleRepo.toString(), null),
+                Collections.singletonList(new BranchSpec("*/dev")), false, Collections.<SubmoduleConfig>emptyList(),
+                null, null, Collections.<GitSCMExtension>singletonList(
+                        new PreBuildMerge(new UserMergeOptions("origin", "master", null, null))));
+        SCMFileSystem fs = SCMFileSystem.of(r.createFreeStyleProject(), scm);
+        assertThat(fs, notNullValue());
+        assertThat(fs.getRoot().child("dev").contentAsString(), is("from dev"));
+        assertThat(fs.getRoot().child("master").contentAsString(), is("from master"));
+        assertThat(fs.getRoot().child("file").contentAsString(), is(""));
+
+        sampleRepo.git("checkout", "dev");
+        sampleRepo.write("master", "conflicting");
+        sampleRepo.git("add", "master");
+        sampleRepo.git("commit", "--all", "--message=conflict");
+        try {
+            SCMFileSystem.of(r.createFreeStyleProject(), scm);
+            fail("conflicting merge has a file system");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("conflicts in [master]"));
+        }
+
+        scm = new GitSCM(GitSCM.createRepoList(sampleRepo.toString(), null),
+                Collections.singletonList(new BranchSpec("*/dev")), false, Collections.<SubmoduleConfig>emptyList(),
+                null, null, Collections.<GitSCMExtension>singletonList(
+                        new PreBuildMerge(new UserMergeOptions("origin", "${TARGET}", null, null))));
+        assertThat("parameterized merge target", SCMFileSystem.supports(scm), is(false));
+    }
+
+    @Test
+    public void pathLookups() throws Exception {
+        sampleRepo.init();
+        sampleRepo.git("checkout", "-b", "dev");
+        sampleRepo.write("dir/subdir/file", "nested");
+        sampleRepo.write("dir/file2", "sibling");
+        sampleRepo.git("add", "dir");
+        sampleRepo.git("commit", "--all", "--message=dev");
+        SCMSource source = new GitSCMSource(null, sampleRepo.toString(), "", "*", "", true);
+        SCMFileSystem fs = SCMFileSystem.of(source, new SCMHead("dev"));
+        assertThat(fs, notNullValue());
+        SCMFile root = fs.getRoot();
+        assertThat(root.child("dir/subdir/file").contentAsString(), is("nested"));
+        assertThat(root.child("dir/file2").getType(), is(SCMFile.Type.REGULAR_FILE));
+        assertThat(root.child("dir/subdir").getType(), is(SCMFile.Type.DIRECTORY));
+        assertThat(root.child("dir/missing").getType(), is(SCMFile.Type.NONEXISTENT));
+        assertThat(root.child("missing/file").getType(), is(SCMFile.Type.NONEXISTENT));
+        assertThat(root.child("file/below").getType(), is(SCMFile.Type.NONEXISTENT));
+        assertThat(root.child("file").contentAsString(), is(""));
+        Set<String> names = new TreeSet<String>();
+        for (SCMFile f : root.child("dir").children()) {
+            names.add(f.getName());
+        }
+        assertThat(names, contains("file2", "subdir"));
+        try {
+            root.child("dir/missing").contentAsString();
+            fail("nonexistent file has content");
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+        try {
+            root.child("dir/file2").children();
+            fail("file has children");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Not a directory"));
+        }
+    }
+
+    @Test
+    public void changesSinceIsParsedAsChangeSets() throws Exception {
+        sampleRepo.init();
+        SCMSource source = new GitSCMSource(null, sampleRepo.toString(), "", "*", "", true);
+        SCMRevision initial = source.fetch(new SCMHead("master"), null);
+        sampleRepo.write("added", "content which is long enough to be detected as renamed");
+        sampleRepo.git("add", "added");
+        sampleRepo.git("commit", "--all", "--message=add\n\ndetails");
+        sampleRepo.git("mv", "added", "renamed");
+        sampleRepo.git("rm", "file");
+        sampleRepo.git("commit", "--all", "--message=rename");
+        SCMFileSystem fs = SCMFileSystem.of(source, new SCMHead("master"));
+        assertThat(fs, notNullValue());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(fs.changesSince(initial, out));
+        List<GitChangeSet> changes = new GitChangeLogParser(true).parse(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(changes.size(), is(2));
+        assertThat(changes.get(0).getComment(), is("rename\n"));
+        assertThat(changes.get(0).getAffectedPaths(), containsInAnyOrder("added", "renamed", "file"));
+        assertThat(changes.get(1).getComment(), is("add\n\ndetails\n"));
+        assertThat(changes.get(1).getAffectedPaths(), contains("added"));
+        assertThat(changes.get(1).getTimestamp(), greaterThanOrEqualTo(0L));
+
+        GitSCMFileSystem.MAX_CHANGES = 1;
+        try {
+            out = new ByteArrayOutputStream();
+            assertTrue(fs.changesSince(initial, out));
+            changes = new GitChangeLogParser(true).parse(new ByteArrayInputStream(out.toByteArray()));
+            assertThat(changes.size(), is(1));
+            assertThat(changes.get(0).getComment(), is("rename\n"));
+        } finally {
+            GitSCMFileSystem.MAX_CHANGES = GitSCM.MAX_CHANGELOG;
+        }
+    }
+
     @Test
     public void given_filesystem_when_askingChangesSinceSameRevision_then_changesAreEmpty() throws Exception {
         File gitDir = new File(".");
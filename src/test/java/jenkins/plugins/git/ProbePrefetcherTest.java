@@ -0,0 +1,56 @@
+package jenkins.plugins.git;
+
+import hudson.model.TaskListener;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.scm.api.SCMSourceCriteria;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ProbePrefetcherTest {
+
+    @Rule
+    public GitSampleRepoRule sampleRepo = new GitSampleRepoRule();
+
+    @After
+    public void clearCache() {
+        TreeProbe.clearCache();
+    }
+
+    @Test
+    public void closeWaitsForRunningEvaluations() throws Exception {
+        sampleRepo.init();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+        SCMSourceCriteria uninterruptible = new SCMSourceCriteria() {
+            @Override
+            public boolean isHead(Probe probe, TaskListener listener) {
+                started.countDown();
+                // ignores interrupts, like a tree walk
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+                while (System.nanoTime() - end < 0) {
+                    Thread.yield();
+                }
+                finished.set(true);
+                return true;
+            }
+        };
+        try (Repository repository = new FileRepositoryBuilder().setWorkTree(sampleRepo.getRoot()).build()) {
+            ProbePrefetcher prefetcher =
+                    new ProbePrefetcher(repository, Collections.singletonList(uninterruptible), 2);
+            prefetcher.submit("master", ObjectId.fromString(sampleRepo.head()));
+            assertThat(started.await(1, TimeUnit.MINUTES), is(true));
+            prefetcher.close();
+            assertThat("the evaluation did not outlive the prefetcher", finished.get(), is(true));
+        }
+    }
+}
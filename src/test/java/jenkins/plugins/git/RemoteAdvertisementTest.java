@@ -0,0 +1,97 @@
+package jenkins.plugins.git;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import jenkins.scm.api.SCMSourceEvent;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RemoteAdvertisementTest {
+
+    private static final String REMOTE = "https://git.example.com/repo.git";
+
+    private GitClient client;
+
+    @Before
+    public void mockClient() throws Exception {
+        client = Mockito.mock(GitClient.class);
+        when(client.getRemoteReferences(anyString(), (String) isNull(), anyBoolean(), anyBoolean())).thenReturn(
+                Collections.singletonMap("refs/heads/master", ObjectId.zeroId()));
+        when(client.getRemoteSymbolicReferences(anyString(), (String) isNull())).thenReturn(
+                Collections.singletonMap("HEAD", "refs/heads/master"));
+    }
+
+    @After
+    public void clear() {
+        RemoteAdvertisement.clear();
+    }
+
+    @Test
+    public void remoteIsListedOncePerRun() throws Exception {
+        RemoteAdvertisement advertisement = RemoteAdvertisement.of(REMOTE, "creds", null);
+        assertThat(advertisement.getSymbolicReferences(client).get("HEAD"), is("refs/heads/master"));
+        assertThat("same remote", RemoteAdvertisement.of("https://GIT.example.com/repo", "creds", null),
+                sameInstance(advertisement));
+        assertThat(advertisement.getReferences(client, true, true).containsKey("refs/heads/master"), is(true));
+        assertThat(advertisement.getReferences(client, true, true).containsKey("refs/heads/master"), is(true));
+        verify(client, times(1)).getRemoteSymbolicReferences(REMOTE, null);
+        verify(client, times(1)).getRemoteReferences(REMOTE, null, true, true);
+
+        assertThat("other credentials", RemoteAdvertisement.of(REMOTE, null, null), not(sameInstance(advertisement)));
+        advertisement.release();
+        assertThat(RemoteAdvertisement.of(REMOTE, "creds", null), not(sameInstance(advertisement)));
+    }
+
+    @Test
+    public void onlyHeadsAndTagsListedUnlessAllReferencesWanted() throws Exception {
+        Map<String, ObjectId> all = new HashMap<>();
+        all.put("HEAD", ObjectId.zeroId());
+        all.put("refs/heads/master", ObjectId.zeroId());
+        all.put("refs/tags/v1", ObjectId.zeroId());
+        all.put("refs/pull/1/head", ObjectId.zeroId());
+        when(client.getRemoteReferences(REMOTE, null, false, false)).thenReturn(all);
+
+        RemoteAdvertisement advertisement = RemoteAdvertisement.of(REMOTE, null, null);
+        advertisement.getReferences(client, true, false);
+        verify(client, times(1)).getRemoteReferences(REMOTE, null, true, false);
+        verify(client, never()).getRemoteReferences(REMOTE, null, false, false);
+
+        // a full listing covers every filter
+        assertThat(advertisement.getReferences(client, false, false), is(all));
+        assertThat(advertisement.getReferences(client, true, true).keySet(),
+                containsInAnyOrder("refs/heads/master", "refs/tags/v1"));
+        assertThat(advertisement.getReferences(client, false, true).keySet(), contains("refs/tags/v1"));
+        verify(client, times(1)).getRemoteReferences(REMOTE, null, false, false);
+        verify(client, times(2)).getRemoteReferences(anyString(), (String) isNull(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void laterEventsListAgain() {
+        RemoteAdvertisement advertisement = RemoteAdvertisement.of(REMOTE, null, null);
+        SCMSourceEvent<?> earlier = Mockito.mock(SCMSourceEvent.class);
+        when(earlier.getTimestamp()).thenReturn(System.currentTimeMillis() - 60000L);
+        assertThat(RemoteAdvertisement.of(REMOTE, null, earlier), sameInstance(advertisement));
+        SCMSourceEvent<?> later = Mockito.mock(SCMSourceEvent.class);
+        when(later.getTimestamp()).thenReturn(System.currentTimeMillis() + 60000L);
+        assertThat(RemoteAdvertisement.of(REMOTE, null, later), not(sameInstance(advertisement)));
+    }
+}
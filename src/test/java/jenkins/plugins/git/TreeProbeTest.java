@@ -0,0 +1,61 @@
+package jenkins.plugins.git;
+
+import jenkins.scm.api.SCMFile;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TreeProbeTest {
+
+    @Rule
+    public GitSampleRepoRule sampleRepo = new GitSampleRepoRule();
+
+    @After
+    public void clearCache() {
+        TreeProbe.clearCache();
+    }
+
+    private ObjectId headTree() throws Exception {
+        try (Repository repository = new FileRepositoryBuilder().setWorkTree(sampleRepo.getRoot()).build();
+             RevWalk walk = new RevWalk(repository)) {
+            return walk.parseCommit(repository.resolve("HEAD")).getTree().copy();
+        }
+    }
+
+    @Test
+    public void statsTheTree() throws Exception {
+        sampleRepo.init();
+        sampleRepo.mkdirs("dir");
+        sampleRepo.write("dir/Jenkinsfile", "node {}");
+        sampleRepo.git("add", "dir");
+        sampleRepo.git("commit", "--message=dir");
+        try (Repository repository = new FileRepositoryBuilder().setWorkTree(sampleRepo.getRoot()).build()) {
+            TreeProbe probe = new TreeProbe(repository, "master", 0L, headTree());
+            assertThat(probe.stat("file").getType(), is(SCMFile.Type.REGULAR_FILE));
+            assertThat(probe.stat("dir").getType(), is(SCMFile.Type.DIRECTORY));
+            assertThat(probe.stat("dir/Jenkinsfile").getType(), is(SCMFile.Type.REGULAR_FILE));
+            assertThat(probe.stat("Jenkinsfile").getType(), is(SCMFile.Type.NONEXISTENT));
+        }
+    }
+
+    @Test
+    public void probesOfTheSameTreeShareResults() throws Exception {
+        sampleRepo.init();
+        ObjectId tree = headTree();
+        try (Repository repository = new FileRepositoryBuilder().setWorkTree(sampleRepo.getRoot()).build()) {
+            new TreeProbe(repository, "master", 0L, tree).stat("file");
+        }
+        // another branch on the same tree does not read the repository again
+        Repository unused = Mockito.mock(Repository.class);
+        assertThat(new TreeProbe(unused, "other", 0L, tree).stat("file").getType(), is(SCMFile.Type.REGULAR_FILE));
+        Mockito.verifyZeroInteractions(unused);
+    }
+}